@@ -0,0 +1,120 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine.benchmark;
+
+import be.yildizgames.engine.client.statemachine.StateFlow;
+import be.yildizgames.engine.client.statemachine.StateFlowEvent;
+import be.yildizgames.engine.client.statemachine.StateId;
+import be.yildizgames.engine.client.statemachine.StateIds;
+import be.yildizgames.engine.client.statemachine.StateManager;
+
+/**
+ * Generate the flow graphs used by the benchmarks.
+ * Every state i reacts to FAN_OUT events, starting with the event i % events which moves it to the state i + 1,
+ * so sending the event expected by the current state walks all the states.
+ * @author Grégory Van den Borre
+ */
+final class FlowGraphs {
+
+    static final int FAN_OUT = 4;
+
+    private FlowGraphs() {
+        super();
+    }
+
+    static StateId state(int index) {
+        return StateId.valueOf(index + 1);
+    }
+
+    static StateFlowEvent event(int index) {
+        return StateFlowEvent.valueOf(index + 1);
+    }
+
+    /**
+     * @param state Index of the current state.
+     * @param events Number of events in the graph.
+     * @return The event moving the state to the next one.
+     */
+    static StateFlowEvent expectedEvent(int state, int events) {
+        return event(state % events);
+    }
+
+    /**
+     * Build a manager with all states directly registered.
+     * @param states Number of states.
+     * @param events Number of events.
+     * @return The manager, in the state 0.
+     */
+    static StateManager<BenchmarkState> eager(int states, int events) {
+        StateManager<BenchmarkState> manager = StateManager.withInitialState(new BenchmarkState(state(0)));
+        for (int i = 1; i < states; i++) {
+            manager.registerGameState(new BenchmarkState(state(i)));
+        }
+        registerFlows(manager, states, events);
+        return manager;
+    }
+
+    /**
+     * Build a manager with all states but the initial one registered with a builder.
+     * @param states Number of states.
+     * @param events Number of events.
+     * @return The manager, in the state 0.
+     */
+    static StateManager<BenchmarkState> lazy(int states, int events) {
+        StateManager<BenchmarkState> manager = StateManager.withInitialState(new BenchmarkState(state(0)));
+        for (int i = 1; i < states; i++) {
+            StateId id = state(i);
+            manager.registerGameState(id, () -> new BenchmarkState(id));
+        }
+        registerFlows(manager, states, events);
+        return manager;
+    }
+
+    /**
+     * Build a manager where all flows are registered from StateIds.ANY, the event i moves to the state i % states.
+     * @param states Number of states.
+     * @param events Number of events.
+     * @return The manager, in the state 0.
+     */
+    static StateManager<BenchmarkState> any(int states, int events) {
+        StateManager<BenchmarkState> manager = StateManager.withInitialState(new BenchmarkState(state(0)));
+        for (int i = 1; i < states; i++) {
+            manager.registerGameState(new BenchmarkState(state(i)));
+        }
+        for (int i = 0; i < events; i++) {
+            manager.registerGameStateFlow(StateFlow.on(event(i)).goFrom(StateIds.ANY).to(state(i % states)));
+        }
+        return manager;
+    }
+
+    static void registerFlows(StateManager<BenchmarkState> manager, int states, int events) {
+        for (int i = 0; i < states; i++) {
+            for (int k = 0; k < FAN_OUT; k++) {
+                manager.registerGameStateFlow(StateFlow.on(event((i + k) % events)).goFrom(state(i)).to(state((i + k + 1) % states)));
+            }
+        }
+    }
+}
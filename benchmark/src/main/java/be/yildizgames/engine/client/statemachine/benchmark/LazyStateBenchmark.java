@@ -0,0 +1,87 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine.benchmark;
+
+import be.yildizgames.engine.client.statemachine.State;
+import be.yildizgames.engine.client.statemachine.StateFlowEvent;
+import be.yildizgames.engine.client.statemachine.StateManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of walking through all the states of a graph when they are registered with a builder,
+ * every transition materializes its target state.
+ * @author Grégory Van den Borre
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LazyStateBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int states;
+
+    @Param({"10", "100", "1000"})
+    private int events;
+
+    private StateManager<BenchmarkState> manager;
+
+    private StateFlowEvent[] expected;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        this.manager = FlowGraphs.lazy(this.states, this.events);
+        this.manager.compile();
+        if (this.expected == null) {
+            this.expected = new StateFlowEvent[this.states];
+            for (int i = 0; i < this.states; i++) {
+                this.expected[i] = FlowGraphs.expectedEvent(i, this.events);
+            }
+        }
+    }
+
+    @Benchmark
+    public State buildAllStates() {
+        for (int i = 0; i < this.states; i++) {
+            this.manager.processEvent(this.expected[i]);
+        }
+        return this.manager.getCurrentState();
+    }
+}
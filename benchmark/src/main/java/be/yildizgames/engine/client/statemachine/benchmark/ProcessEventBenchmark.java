@@ -0,0 +1,103 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine.benchmark;
+
+import be.yildizgames.engine.client.statemachine.State;
+import be.yildizgames.engine.client.statemachine.StateFlowEvent;
+import be.yildizgames.engine.client.statemachine.StateManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of processEvent, with flows registered on the states and with flows only registered from StateIds.ANY.
+ * @author Grégory Van den Borre
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessEventBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int states;
+
+    @Param({"10", "100", "1000"})
+    private int events;
+
+    private StateManager<BenchmarkState> manager;
+
+    private StateManager<BenchmarkState> anyManager;
+
+    private StateFlowEvent[] expected;
+
+    private StateFlowEvent[] eventIds;
+
+    private int current;
+
+    private int anyCurrent;
+
+    @Setup
+    public void setup() {
+        this.manager = FlowGraphs.eager(this.states, this.events);
+        this.manager.compile();
+        this.anyManager = FlowGraphs.any(this.states, this.events);
+        this.anyManager.compile();
+        this.expected = new StateFlowEvent[this.states];
+        for (int i = 0; i < this.states; i++) {
+            this.expected[i] = FlowGraphs.expectedEvent(i, this.events);
+        }
+        this.eventIds = new StateFlowEvent[this.events];
+        for (int i = 0; i < this.events; i++) {
+            this.eventIds[i] = FlowGraphs.event(i);
+        }
+    }
+
+    @Benchmark
+    public State processEvent() {
+        this.manager.processEvent(this.expected[this.current]);
+        this.current = (this.current + 1) % this.states;
+        return this.manager.getCurrentState();
+    }
+
+    @Benchmark
+    public State processEventFromAny() {
+        this.anyManager.processEvent(this.eventIds[this.anyCurrent]);
+        this.anyCurrent = (this.anyCurrent + 1) % this.events;
+        return this.anyManager.getCurrentState();
+    }
+}
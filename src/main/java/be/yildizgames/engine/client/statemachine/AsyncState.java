@@ -0,0 +1,64 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * State whose activation and deactivation run asynchronously, like a loading screen streaming assets.
+ * The StateManager does not block while such a state is activated or deactivated,
+ * events received during the transition are queued and processed once it is complete.
+ * @author Grégory Van den Borre
+ */
+public interface AsyncState extends State {
+
+    CompletionStage<Void> activateAsync();
+
+    CompletionStage<Void> deactivateAsync();
+
+    /**
+     * @return True if this state can be activated while the previous one is still deactivating.
+     */
+    default boolean canOverlap() {
+        return false;
+    }
+
+    /**
+     * Blocking activation, used when the state is not activated by an asynchronous transition.
+     */
+    @Override
+    default void activate() {
+        this.activateAsync().toCompletableFuture().join();
+    }
+
+    /**
+     * Blocking deactivation, used when the state is not deactivated by an asynchronous transition.
+     */
+    @Override
+    default void deactivate() {
+        this.deactivateAsync().toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.util.Arrays;
+
+/**
+ * Callbacks collected while processing machines, to be invoked later in the same order.
+ * @author Grégory Van den Borre
+ */
+final class CallbackLog {
+
+    static final int ACTIVATE = 0;
+
+    static final int DEACTIVATE = 1;
+
+    static final int EXECUTE = 2;
+
+    static final int EXECUTE_BEFORE = 3;
+
+    /**
+     * Entries as kind, row, column triples.
+     */
+    private int[] entries = new int[48];
+
+    private int size;
+
+    void add(int kind, int row, int column) {
+        if (this.size + 3 > this.entries.length) {
+            this.entries = Arrays.copyOf(this.entries, this.entries.length * 2);
+        }
+        this.entries[this.size++] = kind;
+        this.entries[this.size++] = row;
+        this.entries[this.size++] = column;
+    }
+
+    /**
+     * Invoke the collected callbacks.
+     * @param definition Definition providing the states and functions.
+     */
+    void replay(StateMachineDefinition<?> definition) {
+        for (int i = 0; i < this.size; i += 3) {
+            definition.invoke(this.entries[i], this.entries[i + 1], this.entries[i + 2]);
+        }
+    }
+}
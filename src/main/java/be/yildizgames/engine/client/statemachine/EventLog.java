@@ -0,0 +1,196 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Sequence of events received by a StateManager, to replay them later in the same order.
+ * Recording only appends to an int array, it must be done by a single thread.
+ * @author Grégory Van den Borre
+ */
+public final class EventLog {
+
+    /**
+     * First bytes of a written log.
+     */
+    private static final int MAGIC = 0x59534d4c;
+
+    /**
+     * Version of the written format.
+     */
+    private static final int VERSION = 2;
+
+    private int[] events;
+
+    private int size;
+
+    /**
+     * Time spent in the state for each recorded StateFlowEvents.TIMEOUT event, in order.
+     */
+    private long[] timeouts = new long[0];
+
+    private int timeoutSize;
+
+    public EventLog() {
+        this(1024);
+    }
+
+    /**
+     * @param capacity Initial number of events that can be recorded before growing.
+     */
+    public EventLog(int capacity) {
+        super();
+        this.events = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Append an event, a StateFlowEvents.TIMEOUT event is recorded as processed with every timed flow elapsed.
+     * @param event Event value.
+     */
+    public void add(int event) {
+        if (event == StateFlowEvents.TIMEOUT.event.value()) {
+            this.addTimeout(Long.MAX_VALUE);
+        } else {
+            this.append(event);
+        }
+    }
+
+    /**
+     * Append a StateFlowEvents.TIMEOUT event with the time spent in the state when it was processed.
+     * @param elapsedNanos Time spent in the state in nanoseconds.
+     */
+    public void addTimeout(long elapsedNanos) {
+        if (this.timeoutSize == this.timeouts.length) {
+            this.timeouts = Arrays.copyOf(this.timeouts, Math.max(16, this.timeoutSize * 2));
+        }
+        this.timeouts[this.timeoutSize++] = elapsedNanos;
+        this.append(StateFlowEvents.TIMEOUT.event.value());
+    }
+
+    private void append(int event) {
+        if (this.size == this.events.length) {
+            this.events = Arrays.copyOf(this.events, this.size * 2);
+        }
+        this.events[this.size++] = event;
+    }
+
+    /**
+     * @return The number of recorded events.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param index Position of the event.
+     * @return The event value.
+     */
+    public int get(int index) {
+        Objects.checkIndex(index, this.size);
+        return this.events[index];
+    }
+
+    /**
+     * Feed the recorded events to a processor, one processEvent call per event, in the recorded order.
+     * The StateFlowEvents.TIMEOUT events are fed with processTimeout and their recorded elapsed time.
+     * @param processor Processor receiving the events.
+     */
+    public void replay(StateFlowEventProcessor processor) {
+        int timeout = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (this.events[i] == StateFlowEvents.TIMEOUT.event.value()) {
+                processor.processTimeout(this.timeouts[timeout++]);
+            } else {
+                processor.processEvent(StateFlowEvent.valueOf(this.events[i]));
+            }
+        }
+    }
+
+    /**
+     * Write the recorded events in a compact binary form.
+     * @param output Stream to write into, not closed.
+     * @throws IOException If the stream cannot be written.
+     */
+    public void write(OutputStream output) throws IOException {
+        var data = new DataOutputStream(new BufferedOutputStream(output));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(this.size);
+        for (int i = 0; i < this.size; i++) {
+            data.writeInt(this.events[i]);
+        }
+        for (int i = 0; i < this.timeoutSize; i++) {
+            data.writeLong(this.timeouts[i]);
+        }
+        data.flush();
+    }
+
+    /**
+     * Read events written by write.
+     * @param input Stream to read, not closed.
+     * @return The read log.
+     * @throws IOException If the stream cannot be read or does not contain an event log, or if it ends before the announced events.
+     */
+    public static EventLog read(InputStream input) throws IOException {
+        var data = new DataInputStream(new BufferedInputStream(input));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not an event log.");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported event log version: " + version);
+        }
+        int size = data.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid size: " + size);
+        }
+        int[] events = new int[Math.min(size, 1024)];
+        for (int i = 0; i < size; i++) {
+            if (i == events.length) {
+                events = Arrays.copyOf(events, (int) Math.min(size, events.length * 2L));
+            }
+            events[i] = data.readInt();
+        }
+        var log = new EventLog(events.length);
+        for (int event : events) {
+            if (event == StateFlowEvents.TIMEOUT.event.value()) {
+                log.addTimeout(data.readLong());
+            } else {
+                log.append(event);
+            }
+        }
+        return log;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary form of a transition table, the transitions of a loaded file are read directly from the mapped memory.
+ * The file is made of int values, big endian: magic, version, state count, event count, state values, event values,
+ * parent row of each state, next row of each state x event cell, and the CRC32 of all the previous bytes.
+ * @author Grégory Van den Borre
+ */
+final class FlowGraphFormat {
+
+    /**
+     * First bytes of a flow graph file.
+     */
+    static final int MAGIC = 0x59534d47;
+
+    static final int VERSION = 1;
+
+    /**
+     * Size of the magic, version and counts.
+     */
+    private static final int HEADER = 4 * Integer.BYTES;
+
+    private FlowGraphFormat() {
+        super();
+    }
+
+    /**
+     * Write a table.
+     * @param table Table to write.
+     * @param file File to create or replace.
+     * @throws IOException If the file cannot be written.
+     * @throws IllegalArgumentException If the table contains guarded, timed or execution flows.
+     */
+    static void write(TransitionTable table, Path file) throws IOException {
+        if (table.hasFunctions()) {
+            throw new IllegalArgumentException("Guarded, timed and execution flows cannot be written.");
+        }
+        try (OutputStream output = Files.newOutputStream(file)) {
+            var crc = new CRC32();
+            var data = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(output), crc));
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(table.rowCount());
+            data.writeInt(table.columnCount());
+            for (int row = 0; row < table.rowCount(); row++) {
+                data.writeInt(table.state(row).value());
+            }
+            for (int column = 0; column < table.columnCount(); column++) {
+                data.writeInt(table.event(column).value());
+            }
+            for (int row = 0; row < table.rowCount(); row++) {
+                data.writeInt(table.parent(row));
+            }
+            for (int cell = 0; cell < table.rowCount() * table.columnCount(); cell++) {
+                data.writeInt(table.next(cell));
+            }
+            data.flush();
+            data.writeInt((int) crc.getValue());
+            data.flush();
+        }
+    }
+
+    /**
+     * Map a file and build a table using it.
+     * @param file File to load.
+     * @return The table.
+     * @throws IOException If the file cannot be read, is not a flow graph, is corrupted or describes an invalid graph.
+     */
+    static TransitionTable load(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER + Integer.BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a flow graph file.");
+        }
+        int version = buffer.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            throw new IOException("Unsupported flow graph version: " + version);
+        }
+        int rows = buffer.getInt(2 * Integer.BYTES);
+        int columns = buffer.getInt(3 * Integer.BYTES);
+        long size = HEADER + (2L * rows + columns + (long) rows * columns + 1) * Integer.BYTES;
+        if (rows < 0 || columns < 0 || size != buffer.limit()) {
+            throw new IOException("Invalid flow graph size.");
+        }
+        var crc = new CRC32();
+        crc.update(buffer.slice(0, buffer.limit() - Integer.BYTES));
+        if ((int) crc.getValue() != buffer.getInt(buffer.limit() - Integer.BYTES)) {
+            throw new IOException("Corrupted flow graph file.");
+        }
+        IntBuffer ints = buffer.slice(HEADER, buffer.limit() - HEADER - Integer.BYTES).asIntBuffer();
+        var states = new StateId[rows];
+        var stateValues = new HashSet<Integer>();
+        for (int row = 0; row < rows; row++) {
+            if (!stateValues.add(ints.get(row))) {
+                throw new IOException("Duplicate state: " + ints.get(row));
+            }
+            states[row] = StateId.valueOf(ints.get(row));
+        }
+        var events = new StateFlowEvent[columns];
+        var eventValues = new HashSet<Integer>();
+        for (int column = 0; column < columns; column++) {
+            if (!eventValues.add(ints.get(rows + column))) {
+                throw new IOException("Duplicate event: " + ints.get(rows + column));
+            }
+            events[column] = StateFlowEvent.valueOf(ints.get(rows + column));
+        }
+        var parents = new int[rows];
+        ints.get(rows + columns, parents);
+        IntBuffer transitions = ints.slice(2 * rows + columns, rows * columns);
+        for (int i = 0; i < rows; i++) {
+            if (parents[i] < TransitionTable.NONE || parents[i] >= rows) {
+                throw new IOException("Invalid parent row: " + parents[i]);
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            int depth = 0;
+            for (int r = parents[i]; r != TransitionTable.NONE; r = parents[r]) {
+                if (++depth == rows) {
+                    throw new IOException("Cycle in the state hierarchy for " + states[i].value());
+                }
+            }
+        }
+        for (int i = 0; i < transitions.limit(); i++) {
+            int next = transitions.get(i);
+            if (next < TransitionTable.NONE || next >= rows) {
+                throw new IOException("Invalid transition row: " + next);
+            }
+        }
+        return TransitionTable.load(states, events, parents, transitions);
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of the static analysis of a flow graph, and distances between its states.
+ * The distances are computed with a breadth first search from a state the first time it is queried, then cached.
+ * @author Grégory Van den Borre
+ */
+public final class FlowGraphReport {
+
+    private final TransitionTable table;
+
+    /**
+     * Rows reachable in one transition from each row: the targets of row r are between offsets[r] and offsets[r + 1].
+     */
+    private final int[] offsets;
+
+    private final int[] targets;
+
+    /**
+     * Distance from a row to every row, null until computed.
+     */
+    private final int[][] distances;
+
+    private final List<StateId> unreachableStates = new ArrayList<>();
+
+    private final List<StateId> sinkStates = new ArrayList<>();
+
+    private final List<StateFlow> deadFlows = new ArrayList<>();
+
+    private final List<StateFlow> danglingFlows = new ArrayList<>();
+
+    private final List<StateFlow> anyConflicts = new ArrayList<>();
+
+    private FlowGraphReport(TransitionTable table) {
+        super();
+        this.table = table;
+        int rows = table.rowCount();
+        this.offsets = new int[rows + 1];
+        int[][] adjacency = new int[rows][];
+        for (int row = 0; row < rows; row++) {
+            adjacency[row] = table.targets(row);
+            this.offsets[row + 1] = this.offsets[row] + adjacency[row].length;
+        }
+        this.targets = new int[this.offsets[rows]];
+        for (int row = 0; row < rows; row++) {
+            System.arraycopy(adjacency[row], 0, this.targets, this.offsets[row], adjacency[row].length);
+        }
+        this.distances = new int[rows][];
+    }
+
+    /**
+     * Analyze a flow graph.
+     * @param table Compiled flows.
+     * @param flows Registered flows by initial state.
+     * @param groupFlows Registered flows from a state group, only checked for dangling targets.
+     * @param registered Registered states.
+     * @param initial State the machine starts from.
+     * @return The report.
+     */
+    static FlowGraphReport analyze(TransitionTable table, Map<StateId, List<StateFlow>> flows, List<StateFlow> groupFlows,
+                                   Collection<StateId> registered, StateId initial) {
+        var report = new FlowGraphReport(table);
+        int start = table.row(initial);
+        Set<StateId> reached = new HashSet<>();
+        reached.add(initial);
+        if (start == TransitionTable.NONE) {
+            report.sinkStates.add(initial);
+        } else {
+            int[] distance = report.distancesFrom(start);
+            for (int row = 0; row < distance.length; row++) {
+                if (distance[row] != TransitionTable.NONE) {
+                    if (registered.contains(table.state(row)) && report.offsets[row] == report.offsets[row + 1]) {
+                        report.sinkStates.add(table.state(row));
+                    }
+                    for (int r = row; r != TransitionTable.NONE; r = table.parent(r)) {
+                        reached.add(table.state(r));
+                    }
+                }
+            }
+        }
+        registered.stream()
+                .filter(id -> !reached.contains(id))
+                .sorted(Comparator.comparingInt(StateId::value))
+                .forEach(report.unreachableStates::add);
+        report.sinkStates.sort(Comparator.comparingInt(StateId::value));
+        List<StateFlow> anyFlows = flows.getOrDefault(StateIds.ANY.id, Collections.emptyList());
+        Map<StateFlowEvent, StateFlow> anyByEvent = new HashMap<>();
+        anyFlows.stream().filter(f -> f.guard == null).forEach(f -> anyByEvent.putIfAbsent(f.event, f));
+        flows.forEach((state, list) -> {
+            Set<StateFlowEvent> handled = new HashSet<>();
+            boolean origin = state.equals(StateIds.ANY.id) || reached.contains(state);
+            for (StateFlow flow : list) {
+                if (!registered.contains(flow.nextState)) {
+                    report.danglingFlows.add(flow);
+                }
+                if (!origin || handled.contains(flow.event)) {
+                    report.deadFlows.add(flow);
+                } else if (flow.guard == null) {
+                    handled.add(flow.event);
+                }
+                StateFlow any = anyByEvent.get(flow.event);
+                if (!state.equals(StateIds.ANY.id) && any != null && !any.nextState.equals(flow.nextState)) {
+                    report.anyConflicts.add(flow);
+                }
+            }
+        });
+        groupFlows.stream().filter(f -> !registered.contains(f.nextState)).forEach(report.danglingFlows::add);
+        return report;
+    }
+
+    /**
+     * Compute, or provide from the cache, the distance from a row to every other row.
+     * @param row Initial row.
+     * @return The number of transitions to reach each row, NONE if it cannot be reached.
+     */
+    private synchronized int[] distancesFrom(int row) {
+        int[] result = this.distances[row];
+        if (result == null) {
+            result = new int[this.table.rowCount()];
+            Arrays.fill(result, TransitionTable.NONE);
+            int[] queue = new int[result.length];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = row;
+            result[row] = 0;
+            while (head < tail) {
+                int current = queue[head++];
+                for (int i = this.offsets[current]; i < this.offsets[current + 1]; i++) {
+                    int next = this.targets[i];
+                    if (result[next] == TransitionTable.NONE) {
+                        result[next] = result[current] + 1;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            this.distances[row] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Provide the minimum number of transitions between two states, guards are considered as always passing.
+     * @param from Initial state.
+     * @param to Final state.
+     * @return The number of transitions, 0 if both states are the same, -1 if the final state cannot be reached.
+     */
+    public int distance(StateId from, StateId to) {
+        if (from.equals(to)) {
+            return 0;
+        }
+        int source = this.table.row(from);
+        int target = this.table.row(to);
+        if (source == TransitionTable.NONE || target == TransitionTable.NONE) {
+            return -1;
+        }
+        return this.distancesFrom(source)[target];
+    }
+
+    /**
+     * @param from Initial state.
+     * @param to Final state.
+     * @return True if the final state can be reached from the initial one.
+     */
+    public boolean isReachable(StateId from, StateId to) {
+        return this.distance(from, to) != -1;
+    }
+
+    /**
+     * @return The registered states that cannot be reached from the initial state.
+     */
+    public List<StateId> getUnreachableStates() {
+        return Collections.unmodifiableList(this.unreachableStates);
+    }
+
+    /**
+     * @return The reachable states without any flow to leave them.
+     */
+    public List<StateId> getSinkStates() {
+        return Collections.unmodifiableList(this.sinkStates);
+    }
+
+    /**
+     * @return The flows that can never be applied: shadowed by a previous flow without guard for the same state and event,
+     * or leaving an unreachable state.
+     */
+    public List<StateFlow> getDeadFlows() {
+        return Collections.unmodifiableList(this.deadFlows);
+    }
+
+    /**
+     * @return The flows going to a state that is not registered.
+     */
+    public List<StateFlow> getDanglingFlows() {
+        return Collections.unmodifiableList(this.danglingFlows);
+    }
+
+    /**
+     * @return The flows of a specific state overriding a StateIds.ANY flow for the same event with a different target.
+     */
+    public List<StateFlow> getAnyConflicts() {
+        return Collections.unmodifiableList(this.anyConflicts);
+    }
+
+    /**
+     * @return True if no problem was found.
+     */
+    public boolean isValid() {
+        return this.unreachableStates.isEmpty() && this.sinkStates.isEmpty() && this.deadFlows.isEmpty()
+                && this.danglingFlows.isEmpty() && this.anyConflicts.isEmpty();
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntFunction;
+
+/**
+ * Canonical instances for an int based identifier, two ids with the same value retrieved from the registry are the same instance.
+ * Values in [MIN_CACHED, MAX_CACHED] are pre-built in an array, others are interned in an open addressing table keyed by the
+ * primitive value, so a lookup never boxes. A value is only interned when an ordinal is requested for it, a lookup of a value
+ * never interned provides a new instance and does not grow the registry.
+ * The table is filled in place, readers do not lock: a slot is published by its ordinal, written last with release semantics.
+ * A new table, twice bigger, is only published when the current one is half full.
+ * The registry provides a dense ordinal for every interned value, to be used as array index.
+ * @author Grégory Van den Borre
+ */
+final class IdRegistry<T> {
+
+    static final int MIN_CACHED = -128;
+
+    static final int MAX_CACHED = 1023;
+
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final Object[] cached = new Object[MAX_CACHED - MIN_CACHED + 1];
+
+    /**
+     * Ordinal + 1 for the cached values, 0 when not yet assigned.
+     */
+    private final AtomicIntegerArray cachedOrdinals = new AtomicIntegerArray(MAX_CACHED - MIN_CACHED + 1);
+
+    /**
+     * Interned values outside of the cached range.
+     */
+    private volatile Table interned = new Table(new int[16], new int[16], new Object[16]);
+
+    private final IntFunction<T> factory;
+
+    /**
+     * Number of values in the interned table, guarded by this.
+     */
+    private int size;
+
+    private int ordinalCount;
+
+    IdRegistry(IntFunction<T> factory) {
+        super();
+        this.factory = factory;
+        for (int i = 0; i < this.cached.length; i++) {
+            this.cached[i] = factory.apply(i + MIN_CACHED);
+        }
+    }
+
+    /**
+     * @param value Id value.
+     * @return The canonical instance for the value, or a new instance if the value is not interned.
+     */
+    @SuppressWarnings("unchecked")
+    T get(int value) {
+        if (value >= MIN_CACHED && value <= MAX_CACHED) {
+            return (T) this.cached[value - MIN_CACHED];
+        }
+        Table table = this.interned;
+        int slot = table.find(value);
+        return (int) SLOT.getAcquire(table.ordinals, slot) == 0 ? this.factory.apply(value) : (T) table.values[slot];
+    }
+
+    /**
+     * @param value Id value.
+     * @return The dense ordinal for the value, a new one is assigned and the value interned if it never had one.
+     */
+    int ordinal(int value) {
+        int ordinal = this.find(value);
+        if (ordinal >= 0) {
+            return ordinal;
+        }
+        if (value >= MIN_CACHED && value <= MAX_CACHED) {
+            return this.assignCached(value);
+        }
+        return this.intern(value);
+    }
+
+    /**
+     * @param value Id value.
+     * @return The ordinal of the value, or a negative value if none was assigned, no ordinal is assigned.
+     */
+    int find(int value) {
+        if (value >= MIN_CACHED && value <= MAX_CACHED) {
+            return this.cachedOrdinals.get(value - MIN_CACHED) - 1;
+        }
+        Table table = this.interned;
+        return (int) SLOT.getAcquire(table.ordinals, table.find(value)) - 1;
+    }
+
+    private synchronized int assignCached(int value) {
+        int ordinal = this.cachedOrdinals.get(value - MIN_CACHED);
+        if (ordinal == 0) {
+            ordinal = ++this.ordinalCount;
+            this.cachedOrdinals.set(value - MIN_CACHED, ordinal);
+        }
+        return ordinal - 1;
+    }
+
+    /**
+     * Add a value to the table, its instance and ordinal are created with it.
+     * The table is only copied when it must grow, its capacity is then doubled.
+     * @param value Value to add.
+     * @return The ordinal of the value.
+     */
+    private synchronized int intern(int value) {
+        Table table = this.interned;
+        int slot = table.find(value);
+        if (table.ordinals[slot] != 0) {
+            return table.ordinals[slot] - 1;
+        }
+        if ((this.size + 1) * 2 > table.keys.length) {
+            int capacity = table.keys.length * 2;
+            var grown = new Table(new int[capacity], new int[capacity], new Object[capacity]);
+            for (int i = 0; i < table.keys.length; i++) {
+                if (table.ordinals[i] != 0) {
+                    grown.put(table.keys[i], table.ordinals[i], table.values[i]);
+                }
+            }
+            this.interned = grown;
+            table = grown;
+        }
+        int ordinal = ++this.ordinalCount;
+        table.put(value, ordinal, this.factory.apply(value));
+        this.size++;
+        return ordinal - 1;
+    }
+
+    /**
+     * Open addressing table with linear probing, an ordinal of 0 marks an empty slot.
+     * @param keys Value of each slot.
+     * @param ordinals Ordinal + 1 of each slot, set last when a slot is filled.
+     * @param values Instance of each slot.
+     */
+    private record Table(int[] keys, int[] ordinals, Object[] values) {
+
+        /**
+         * @param value Value to find.
+         * @return The slot of the value, or the empty slot where it would be stored.
+         */
+        int find(int value) {
+            int mask = this.keys.length - 1;
+            int hash = value * 0x9E3779B9;
+            int slot = (hash ^ hash >>> 16) & mask;
+            while ((int) SLOT.getAcquire(this.ordinals, slot) != 0 && this.keys[slot] != value) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Fill a slot, the ordinal is published after the key and instance.
+         */
+        void put(int value, int ordinal, Object instance) {
+            int slot = this.find(value);
+            this.keys[slot] = value;
+            this.values[slot] = instance;
+            SLOT.setRelease(this.ordinals, slot, ordinal);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event emitted when an event is lost, because the queue is full, an asynchronous transition failed,
+ * or it was merged by a coalescing policy.
+ * @author Grégory Van den Borre
+ */
+@Name("be.yildizgames.statemachine.Dropped")
+@Label("Dropped State Flow Event")
+@Category({"Yildiz", "State Machine"})
+@Description("Event discarded without being processed")
+final class JfrDroppedEvent extends Event {
+
+    static final String QUEUE_FULL = "Queue full";
+
+    static final String TRANSITION_FAILED = "Transition failed";
+
+    static final String COALESCED = "Coalesced";
+
+    private static final EventType TYPE = EventType.getEventType(JfrDroppedEvent.class);
+
+    @Label("Event")
+    int event;
+
+    @Label("Reason")
+    String reason;
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * Record a dropped event if the recording is enabled.
+     * @param event Event value.
+     * @param reason Reason of the drop.
+     */
+    static void emit(int event, String reason) {
+        if (enabled()) {
+            var e = new JfrDroppedEvent();
+            e.event = event;
+            e.reason = reason;
+            e.commit();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.io.Serial;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Process the pending events of a range of machines, splitting the range until it is small enough.
+ * Events of a machine are always processed by the same task, in order.
+ * @author Grégory Van den Borre
+ */
+final class ParallelStep extends RecursiveAction {
+
+    /**
+     * Number of machines processed by a single task.
+     */
+    static final int CHUNK = 1024;
+
+    /**
+     * The task is never serialized, its fields are transient.
+     */
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final transient StateMachineDefinition<?> definition;
+
+    private final transient int[] rows;
+
+    private final transient int[][] events;
+
+    /**
+     * Log for each chunk, or null to invoke the callbacks directly.
+     */
+    private final transient CallbackLog[] logs;
+
+    private final int fromChunk;
+
+    private final int toChunk;
+
+    ParallelStep(StateMachineDefinition<?> definition, int[] rows, int[][] events, CallbackLog[] logs, int fromChunk, int toChunk) {
+        super();
+        this.definition = definition;
+        this.rows = rows;
+        this.events = events;
+        this.logs = logs;
+        this.fromChunk = fromChunk;
+        this.toChunk = toChunk;
+    }
+
+    @Override
+    protected void compute() {
+        if (this.toChunk - this.fromChunk > 1) {
+            int middle = (this.fromChunk + this.toChunk) >>> 1;
+            invokeAll(new ParallelStep(this.definition, this.rows, this.events, this.logs, this.fromChunk, middle),
+                    new ParallelStep(this.definition, this.rows, this.events, this.logs, middle, this.toChunk));
+            return;
+        }
+        CallbackLog log = null;
+        if (this.logs != null) {
+            log = new CallbackLog();
+            this.logs[this.fromChunk] = log;
+        }
+        int end = Math.min(this.rows.length, (this.fromChunk + 1) * CHUNK);
+        for (int machine = this.fromChunk * CHUNK; machine < end; machine++) {
+            int[] pending = this.events[machine];
+            if (pending != null) {
+                int row = this.rows[machine];
+                for (int event : pending) {
+                    row = this.definition.process(row, StateFlowEvent.valueOf(event), log);
+                }
+                this.rows[machine] = row;
+            }
+        }
+    }
+}
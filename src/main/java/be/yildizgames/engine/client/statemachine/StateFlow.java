@@ -24,6 +24,9 @@
 
 package be.yildizgames.engine.client.statemachine;
 
+import java.time.Duration;
+import java.util.function.IntPredicate;
+
 /**
  * To move from one state to another when an event occurs.
  * @author Grégory Van den Borre
@@ -31,10 +34,15 @@ package be.yildizgames.engine.client.statemachine;
 public class StateFlow {
 
     /**
-     * Initial state.
+     * Initial state, null for a flow from a group.
      */
     final StateId state;
 
+    /**
+     * Initial states, null for a flow from a single state.
+     */
+    final StateGroup group;
+
     /**
      * Final state.
      */
@@ -45,10 +53,27 @@ public class StateFlow {
      */
     final StateFlowEvent event;
 
+    /**
+     * Condition to apply the flow, tested with the current state value, null if the flow is unconditional.
+     */
+    final IntPredicate guard;
+
+    /**
+     * Time to spend in the initial state before the flow is applied, in nanoseconds, negative if the flow is not timed.
+     */
+    final long delay;
+
     StateFlow(StateId state, StateId nextState, StateFlowEvent event) {
+        this(state, null, nextState, event, null, -1);
+    }
+
+    StateFlow(StateId state, StateGroup group, StateId nextState, StateFlowEvent event, IntPredicate guard, long delay) {
         this.state = state;
+        this.group = group;
         this.nextState = nextState;
         this.event = event;
+        this.guard = guard;
+        this.delay = delay;
     }
 
     /**
@@ -64,6 +89,30 @@ public class StateFlow {
         return new StateFlowBuilder(event.event);
     }
 
+    /**
+     * Build a new timed flow, applied when the machine stayed in the initial state for a given time, counted with the tick calls.
+     * The flow reacts to StateFlowEvents.TIMEOUT, each timed flow of a state is only considered once its own delay is elapsed:
+     * when a guard rejects a flow, the timer is armed again for the next timed flow of the state.
+     * @param delay Time to spend in the initial state.
+     * @return A builder to create the flow.
+     */
+    public static StateFlowBuilder after(Duration delay) {
+        if (delay.isNegative()) {
+            throw new IllegalArgumentException("Negative delay: " + delay);
+        }
+        return new StateFlowBuilder(StateFlowEvents.TIMEOUT.event, delay.toNanos());
+    }
+
+    @Override
+    public String toString() {
+        return "StateFlow{" +
+                (group == null ? "state=" + state.value() : "group=" + group.getName()) +
+                ", event=" + event.value() +
+                ", nextState=" + nextState.value() +
+                (guard == null ? "" : ", guarded") +
+                '}';
+    }
+
     /**
      * Check if this flow will react to a given event.
      * @param e Event to check.
@@ -25,6 +25,8 @@
 package be.yildizgames.engine.client.statemachine;
 
 import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntPredicate;
 
 /**
  * @author Grégory Van den Borre
@@ -35,15 +37,42 @@ public class StateFlowBuilder {
 
     private StateId currentState;
 
+    private StateGroup currentGroup;
+
+    private IntPredicate guard;
+
+    /**
+     * Delay of a timed flow in nanoseconds, negative for a flow triggered by its event.
+     */
+    private final long delay;
+
     StateFlowBuilder(StateFlowEvent event) {
+        this(event, -1);
+    }
+
+    StateFlowBuilder(StateFlowEvent event, long delay) {
         super();
         Objects.requireNonNull(event);
         this.event = event;
+        this.delay = delay;
     }
 
     public final StateFlowBuilder goFrom(StateId state) {
         Objects.requireNonNull(state);
         this.currentState = state;
+        this.currentGroup = null;
+        return this;
+    }
+
+    /**
+     * Apply the flow from every state of a group, the flows of a state take precedence over the flows of its groups.
+     * @param group Initial states.
+     * @return This builder.
+     */
+    public final StateFlowBuilder goFrom(StateGroup group) {
+        Objects.requireNonNull(group);
+        this.currentGroup = group;
+        this.currentState = null;
         return this;
     }
 
@@ -55,13 +84,50 @@ public class StateFlowBuilder {
         return goFrom(state.id);
     }
 
+    /**
+     * Only apply the flow when a condition is met, the guards of the flows for a same state and event are evaluated in
+     * registration order until one succeeds, a flow without guard is always applied.
+     * @param guard Condition, tested with the value of the current state.
+     * @return This builder.
+     */
+    public final StateFlowBuilder when(IntPredicate guard) {
+        Objects.requireNonNull(guard);
+        this.guard = guard;
+        return this;
+    }
+
+    /**
+     * Only apply the flow when a condition is met.
+     * @param guard Condition.
+     * @return This builder.
+     */
+    public final StateFlowBuilder when(BooleanSupplier guard) {
+        Objects.requireNonNull(guard);
+        return when(v -> guard.getAsBoolean());
+    }
+
     public final StateFlow to(StateId nextState) {
         Objects.requireNonNull(nextState);
-        return new StateFlow(this.currentState, nextState, this.event);
+        return new StateFlow(this.currentState, this.currentGroup, nextState, this.event, this.guard, this.delay);
     }
 
+    /**
+     * Execute a function when the event is received, after the state change caused by the event if any, in the reached state.
+     * All the functions registered for a state, its groups, its parents and StateIds.ANY are executed, in that order.
+     * @param function Function to execute.
+     * @return The execution flow.
+     */
     public final StateFlowExecution execute(StateFlowExecutionFunction function) {
-        return new StateFlowExecution(this.currentState, this.event, function);
+        return new StateFlowExecution(this.currentState, this.currentGroup, this.event, function, false);
+    }
+
+    /**
+     * Execute a function when the event is received, before the state change caused by the event if any, in the initial state.
+     * @param function Function to execute.
+     * @return The execution flow.
+     */
+    public final StateFlowExecution executeBefore(StateFlowExecutionFunction function) {
+        return new StateFlowExecution(this.currentState, this.currentGroup, this.event, function, true);
     }
 
     public final StateFlow to(State nextState) {
@@ -29,7 +29,39 @@ package be.yildizgames.engine.client.statemachine;
  */
 public record StateFlowEvent(int value) {
 
+    private static final IdRegistry<StateFlowEvent> REGISTRY = new IdRegistry<>(StateFlowEvent::new);
+
+    /**
+     * Provide the canonical instance for a value, the same instance is always returned for a value in the cached range
+     * or used by a flow, other values are not interned and provide a new instance.
+     * @param value Value of the event.
+     * @return The event for the value.
+     */
     public static StateFlowEvent valueOf(int value) {
-        return new StateFlowEvent(value);
+        return REGISTRY.get(value);
+    }
+
+    /**
+     * @return A dense index for this event, shared by every event with the same value.
+     */
+    int ordinal() {
+        return REGISTRY.ordinal(this.value);
+    }
+
+    /**
+     * Provide the index of this event without assigning one, to look up a value coming from outside without growing the registry.
+     * @return The index of this event, or a negative value if it never had one.
+     */
+    int findOrdinal() {
+        return findOrdinal(this.value);
+    }
+
+    /**
+     * @param value Event value.
+     * @return The index of the event value, or a negative value if it never had one, no instance is retrieved nor created.
+     */
+    static int findOrdinal(int value) {
+        return REGISTRY.find(value);
     }
+
 }
@@ -12,6 +12,9 @@
 
 package be.yildizgames.engine.client.statemachine;
 
+import java.nio.IntBuffer;
+import java.util.Objects;
+
 /**
  * @author Grégory Van den Borre
  */
@@ -21,5 +24,36 @@ public interface StateFlowEventProcessor {
 
     void processEvent(StateFlowEvents events);
 
+    /**
+     * Process a StateFlowEvents.TIMEOUT event as if the timer of the current state expired after a given time,
+     * only the timed flows whose delay is elapsed are considered.
+     * @param elapsedNanos Time spent in the current state in nanoseconds.
+     */
+    default void processTimeout(long elapsedNanos) {
+        this.processEvent(StateFlowEvents.TIMEOUT);
+    }
+
+    /**
+     * Process several events at once.
+     * @param events Event values.
+     * @param offset Position of the first event to process.
+     * @param length Number of events to process.
+     */
+    default void processEvents(int[] events, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, events.length);
+        for (int i = offset; i < offset + length; i++) {
+            this.processEvent(StateFlowEvent.valueOf(events[i]));
+        }
+    }
+
+    /**
+     * Process all the remaining events of a buffer, the buffer position is moved to its limit.
+     * @param events Event values.
+     */
+    default void processEvents(IntBuffer events) {
+        while (events.hasRemaining()) {
+            this.processEvent(StateFlowEvent.valueOf(events.get()));
+        }
+    }
 
 }
@@ -0,0 +1,214 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free multiple producers, single consumer ring buffer of event values.
+ * Every slot has a sequence number telling if it is free for the producer claiming it or ready for the consumer,
+ * producers claim slots with a CAS on the tail and the consumer is the only one moving the head.
+ * Events posted by the same producer are consumed in the posting order.
+ * @author Grégory Van den Borre
+ */
+final class StateFlowEventQueue {
+
+    private static final int SPIN_BEFORE_PARK = 100;
+
+    private final int[] events;
+
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    private final EventQueuePolicy policy;
+
+    /**
+     * Only used by the consumer.
+     */
+    private long head;
+
+    /**
+     * True while events are stored in the overflow, producers then use it to keep their events ordered.
+     */
+    private volatile boolean overflowing;
+
+    /**
+     * Events posted while the ring was full with the GROW policy, guarded by this.
+     */
+    private int[] overflow = new int[0];
+
+    private int overflowHead;
+
+    private int overflowSize;
+
+    /**
+     * @param capacity Minimum number of events that can be stored, rounded up to the next power of two.
+     * @param policy Policy to apply when the queue is full.
+     */
+    StateFlowEventQueue(int capacity, EventQueuePolicy policy) {
+        super();
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.policy = Objects.requireNonNull(policy);
+        int size = Math.max(1, Integer.highestOneBit(capacity - 1) << 1);
+        this.events = new int[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Post an event, can be called from any thread.
+     * @param event Event value.
+     * @return True if the event was queued, false if it was dropped.
+     */
+    boolean offer(int event) {
+        if (this.overflowing && this.offerOverflow(event, false)) {
+            return true;
+        }
+        int spin = 0;
+        while (true) {
+            long t = this.tail.get();
+            int index = (int) t & this.mask;
+            long sequence = this.sequences.get(index);
+            if (sequence == t) {
+                if (this.tail.compareAndSet(t, t + 1)) {
+                    this.events[index] = event;
+                    this.sequences.set(index, t + 1);
+                    return true;
+                }
+            } else if (sequence < t) {
+                switch (this.policy) {
+                    case DROP:
+                        return false;
+                    case GROW:
+                        if (this.offerOverflow(event, true)) {
+                            return true;
+                        }
+                        break;
+                    default:
+                        if (++spin < SPIN_BEFORE_PARK) {
+                            Thread.onSpinWait();
+                        } else {
+                            LockSupport.parkNanos(1_000);
+                        }
+                }
+            }
+        }
+    }
+
+    /**
+     * Move the pending events to an array, must only be called from the consumer thread.
+     * @param target Array receiving the events.
+     * @param offset First position to use in the array.
+     * @param max Maximum number of events to move.
+     * @return The number of events moved.
+     */
+    int drainTo(int[] target, int offset, int max) {
+        int count = 0;
+        while (count < max) {
+            int index = (int) this.head & this.mask;
+            if (this.sequences.get(index) != this.head + 1) {
+                break;
+            }
+            target[offset + count] = this.events[index];
+            this.sequences.set(index, this.head + this.events.length);
+            this.head++;
+            count++;
+        }
+        if (count < max && this.overflowing) {
+            count += this.drainOverflow(target, offset + count, max - count);
+        }
+        return count;
+    }
+
+    /**
+     * Copy the pending events without removing them, must only be called from the consumer thread.
+     * @return The pending events, in order.
+     */
+    int[] peek() {
+        int[] result = new int[16];
+        int count = 0;
+        for (long h = this.head; this.sequences.get((int) h & this.mask) == h + 1; h++) {
+            if (count == result.length) {
+                result = Arrays.copyOf(result, count * 2);
+            }
+            result[count++] = this.events[(int) h & this.mask];
+        }
+        if (this.overflowing) {
+            synchronized (this) {
+                result = Arrays.copyOf(result, count + this.overflowSize);
+                for (int i = 0; i < this.overflowSize; i++) {
+                    result[count++] = this.overflow[(this.overflowHead + i) % this.overflow.length];
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private synchronized boolean offerOverflow(int event, boolean full) {
+        if (!full && !this.overflowing) {
+            return false;
+        }
+        if (this.overflowSize == this.overflow.length) {
+            int[] grown = new int[Math.max(16, this.overflow.length * 2)];
+            for (int i = 0; i < this.overflowSize; i++) {
+                grown[i] = this.overflow[(this.overflowHead + i) % this.overflow.length];
+            }
+            this.overflow = grown;
+            this.overflowHead = 0;
+        }
+        this.overflow[(this.overflowHead + this.overflowSize) % this.overflow.length] = event;
+        this.overflowSize++;
+        this.overflowing = true;
+        return true;
+    }
+
+    private synchronized int drainOverflow(int[] target, int offset, int max) {
+        int count = Math.min(max, this.overflowSize);
+        for (int i = 0; i < count; i++) {
+            target[offset + i] = this.overflow[(this.overflowHead + i) % this.overflow.length];
+        }
+        this.overflowHead = (this.overflowHead + count) % this.overflow.length;
+        this.overflowSize -= count;
+        if (this.overflowSize == 0) {
+            this.overflowing = false;
+            this.overflowHead = 0;
+        }
+        return count;
+    }
+
+}
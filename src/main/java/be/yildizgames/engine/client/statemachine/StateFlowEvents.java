@@ -34,6 +34,11 @@ public enum StateFlowEvents {
 
     START_APP(StateFlowEvent.valueOf(-1)),
 
+    /**
+     * Sent when a machine stays in a state longer than the delay of a flow created with StateFlow.after.
+     */
+    TIMEOUT(StateFlowEvent.valueOf(-3)),
+
     AUTHENTICATION_SUCCESSFUL(StateFlowEvent.valueOf(1)),
 
     AUTHENTICATION_DISCONNECTED(StateFlowEvent.valueOf(2)),
@@ -21,16 +21,35 @@ public class StateFlowExecution {
 
     final StateFlowExecutionFunction function;
 
+    /**
+     * Initial state, null for a flow from a group.
+     */
     final StateId state;
 
+    /**
+     * Initial states, null for a flow from a single state.
+     */
+    final StateGroup group;
+
     /**
      * Event to move from initial to final.
      */
     final StateFlowEvent event;
 
+    /**
+     * True to execute the function before the state change, false to execute it after.
+     */
+    final boolean before;
+
     public StateFlowExecution(StateId state, StateFlowEvent event, StateFlowExecutionFunction function) {
+        this(Objects.requireNonNull(state), null, event, function, false);
+    }
+
+    StateFlowExecution(StateId state, StateGroup group, StateFlowEvent event, StateFlowExecutionFunction function, boolean before) {
         super();
-        this.state = Objects.requireNonNull(state);
+        this.state = state;
+        this.group = group;
+        this.before = before;
         this.function = Objects.requireNonNull(function);
         this.event = Objects.requireNonNull(event);
     }
@@ -0,0 +1,93 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Named set of states, usable as the initial state of a flow to apply it from every state of the set.
+ * When the flows are compiled, the flows of a state win over the flows of its groups, which win over the flows of its parent,
+ * StateIds.ANY flows come last. The flows of overlapping groups are resolved in registration order.
+ * @author Grégory Van den Borre
+ */
+public final class StateGroup {
+
+    private final String name;
+
+    private final Set<StateId> states;
+
+    private StateGroup(String name, Set<StateId> states) {
+        super();
+        this.name = name;
+        this.states = states;
+    }
+
+    /**
+     * Create a group.
+     * @param name Group name.
+     * @param states States in the group.
+     * @return The created group.
+     * @throws IllegalArgumentException If the group is empty or contains StateIds.ANY.
+     */
+    public static StateGroup of(String name, StateId... states) {
+        Objects.requireNonNull(name);
+        if (states.length == 0) {
+            throw new IllegalArgumentException("Empty group " + name);
+        }
+        Set<StateId> members = Set.of(states);
+        if (members.contains(StateIds.ANY.id)) {
+            throw new IllegalArgumentException("StateIds.ANY cannot be part of a group.");
+        }
+        return new StateGroup(name, members);
+    }
+
+    public static StateGroup of(String name, StateIds... states) {
+        return of(name, Arrays.stream(states).map(s -> s.id).toArray(StateId[]::new));
+    }
+
+    /**
+     * @param state State id.
+     * @return True if the state is in the group.
+     */
+    public boolean contains(StateId state) {
+        return this.states.contains(state);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public Set<StateId> getStates() {
+        return this.states;
+    }
+
+    @Override
+    public String toString() {
+        return "StateGroup{" + this.name + '}';
+    }
+}
@@ -30,7 +30,31 @@ package be.yildizgames.engine.client.statemachine;
  */
 public record StateId(int value) {
 
+    private static final IdRegistry<StateId> REGISTRY = new IdRegistry<>(StateId::new);
+
+    /**
+     * Provide the canonical instance for a value, the same instance is always returned for a value in the cached range
+     * or used by a flow, other values are not interned and provide a new instance.
+     * @param value Value of the state.
+     * @return The state for the value.
+     */
     public static StateId valueOf(int value) {
-        return new StateId(value);
+        return REGISTRY.get(value);
+    }
+
+    /**
+     * @return A dense index for this state, shared by every state with the same value.
+     */
+    int ordinal() {
+        return REGISTRY.ordinal(this.value);
     }
+
+    /**
+     * Provide the index of this state without assigning one, to look up a value coming from outside without growing the registry.
+     * @return The index of this state, or a negative value if it never had one.
+     */
+    int findOrdinal() {
+        return REGISTRY.find(this.value);
+    }
+
 }
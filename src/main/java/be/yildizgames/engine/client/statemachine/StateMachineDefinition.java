@@ -0,0 +1,329 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable and thread safe flow graph, shared by many lightweight state machines.
+ * The machines only store their current state row, the states themselves are built once and shared.
+ * As a state object serves every machine in it, it must be stateless: its activate and deactivate callbacks
+ * are notifications that one machine entered or left it, not that the object itself was entered or left.
+ * @author Grégory Van den Borre
+ */
+public final class StateMachineDefinition<T extends State> {
+
+    private final TransitionTable table;
+
+    /**
+     * Builder for each row, null for the rows without state.
+     */
+    private final StateManager.StateBuilder<?>[] builders;
+
+    /**
+     * State for each row, null until built.
+     */
+    private final AtomicReferenceArray<T> states;
+
+    /**
+     * Lock for each row, held to build its state and, with CallbackMode.PARALLEL, to invoke its activate and deactivate callbacks.
+     */
+    private final Object[] locks;
+
+    private final CallbackMode callbackMode;
+
+    StateMachineDefinition(StateMachineDefinitionBuilder<T> builder, TransitionTable table) {
+        super();
+        this.callbackMode = builder.callbackMode;
+        this.table = table;
+        this.builders = new StateManager.StateBuilder<?>[this.table.rowCount()];
+        builder.states.forEach((id, b) -> {
+            int row = this.table.row(id);
+            if(row != TransitionTable.NONE) {
+                this.builders[row] = b;
+            }
+        });
+        this.states = new AtomicReferenceArray<>(this.builders.length);
+        this.locks = new Object[this.builders.length];
+        for (int row = 0; row < this.locks.length; row++) {
+            this.locks[row] = new Object();
+        }
+    }
+
+    public static <T extends State> StateMachineDefinitionBuilder<T> builder() {
+        return new StateMachineDefinitionBuilder<>();
+    }
+
+    /**
+     * Write the compiled flow graph in a binary file, to be loaded with StateMachineDefinitionBuilder.load without registering the flows again.
+     * The states are not written, they must be registered in the builder loading the file.
+     * @param file File to create or replace.
+     * @throws IOException If the file cannot be written.
+     * @throws IllegalArgumentException If the definition contains guarded, timed or execution flows.
+     */
+    public void write(final Path file) throws IOException {
+        Objects.requireNonNull(file);
+        FlowGraphFormat.write(this.table, file);
+    }
+
+    /**
+     * Create a new machine, the initial state and its parents are activated.
+     * @param initialState Initial state of the machine.
+     * @return The created machine.
+     */
+    public StateMachineInstance<T> newInstance(final StateId initialState) {
+        return new StateMachineInstance<>(this, this.start(initialState));
+    }
+
+    /**
+     * Activate the initial state of a machine and its parents.
+     * @param initialState Initial state of the machine.
+     * @return The row of the initial state.
+     */
+    int start(final StateId initialState) {
+        int row = this.initialRow(initialState);
+        this.enter(row, TransitionTable.NONE);
+        return row;
+    }
+
+    /**
+     * @return The events having at least one flow in the definition.
+     */
+    List<StateFlowEvent> events() {
+        return IntStream.range(0, this.table.columnCount()).mapToObj(this.table::event).toList();
+    }
+
+    /**
+     * Create a pool of machines stored as a single int array, the initial state and its parents are activated once
+     * for the whole pool rather than once per machine, as all the machines share the same state objects.
+     * @param size Number of machines in the pool.
+     * @param initialState Initial state of the machines.
+     * @return The created pool.
+     */
+    public StateMachinePool<T> newPool(final int size, final StateId initialState) {
+        return new StateMachinePool<>(this, size, this.start(initialState));
+    }
+
+    /**
+     * @param row State row.
+     * @return The delay of the timed flow leaving the state in nanoseconds, negative if there is none.
+     */
+    long timeout(final int row) {
+        return this.table.timeout(row);
+    }
+
+    /**
+     * @param row State row.
+     * @param elapsed Time spent in the state in nanoseconds.
+     * @return The delay of the next timed flow to wait for, negative if there is none.
+     */
+    long nextTimeout(final int row, final long elapsed) {
+        return this.table.nextTimeout(row, elapsed);
+    }
+
+    boolean hasTimeouts() {
+        return this.table.hasTimeouts();
+    }
+
+    private int initialRow(final StateId initialState) {
+        Objects.requireNonNull(initialState);
+        int row = this.table.row(initialState);
+        if(row == TransitionTable.NONE || this.builders[row] == null) {
+            throw new IllegalArgumentException("No state associated with " + initialState.value());
+        }
+        return row;
+    }
+
+    /**
+     * Apply an event to a machine.
+     * @param row Current row of the machine.
+     * @param event Event to process.
+     * @return The row of the machine after the event.
+     */
+    int process(final int row, final StateFlowEvent event) {
+        return this.process(row, event, null);
+    }
+
+    /**
+     * Apply an event to a machine.
+     * @param row Current row of the machine.
+     * @param event Event to process.
+     * @param log Log collecting the callbacks, or null to invoke them directly.
+     * @return The row of the machine after the event.
+     */
+    int process(final int row, final StateFlowEvent event, final CallbackLog log) {
+        return this.process(row, event, log, Long.MAX_VALUE);
+    }
+
+    /**
+     * Apply an event to a machine.
+     * @param row Current row of the machine.
+     * @param event Event to process.
+     * @param log Log collecting the callbacks, or null to invoke them directly.
+     * @param elapsed Time spent in the current state in nanoseconds, timed flows with a longer delay are ignored.
+     * @return The row of the machine after the event.
+     */
+    int process(final int row, final StateFlowEvent event, final CallbackLog log, final long elapsed) {
+        int column = this.table.column(event);
+        if(column == TransitionTable.NONE) {
+            return row;
+        }
+        if(this.table.beforeExecutions(row, column) != null) {
+            this.callback(CallbackLog.EXECUTE_BEFORE, row, column, log);
+        }
+        int cell = this.table.cell(row, column, elapsed);
+        int next = this.table.next(cell);
+        int current = row;
+        if(next != TransitionTable.NONE) {
+            int path = this.table.path(cell);
+            if(path == TransitionTable.NONE) {
+                this.callback(CallbackLog.DEACTIVATE, row, column, log);
+                this.callback(CallbackLog.ACTIVATE, next, column, log);
+            } else {
+                for (int r : this.table.exits(path)) {
+                    this.callback(CallbackLog.DEACTIVATE, r, column, log);
+                }
+                for (int r : this.table.entries(path)) {
+                    this.callback(CallbackLog.ACTIVATE, r, column, log);
+                }
+            }
+            current = next;
+        }
+        if(this.table.executions(current, column) != null) {
+            this.callback(CallbackLog.EXECUTE, current, column, log);
+        }
+        return current;
+    }
+
+    /**
+     * Process the pending events of many machines in parallel, partitioned by machine.
+     * The events of a machine are processed in order, callbacks are invoked according to the definition callback mode.
+     * @param rows Current row of every machine, updated.
+     * @param events Pending events for every machine, null if a machine has no event.
+     * @param executor Pool running the tasks.
+     */
+    void processParallel(final int[] rows, final int[][] events, final ForkJoinPool executor) {
+        int chunks = (rows.length + ParallelStep.CHUNK - 1) / ParallelStep.CHUNK;
+        if(chunks == 0) {
+            return;
+        }
+        CallbackLog[] logs = this.callbackMode == CallbackMode.CALLER ? new CallbackLog[chunks] : null;
+        executor.invoke(new ParallelStep(this, rows, events, logs, 0, chunks));
+        if(logs != null) {
+            for (CallbackLog log : logs) {
+                log.replay(this);
+            }
+        }
+    }
+
+    private void callback(final int kind, final int row, final int column, final CallbackLog log) {
+        if(log == null) {
+            this.invoke(kind, row, column);
+        } else {
+            log.add(kind, row, column);
+        }
+    }
+
+    void invoke(final int kind, final int row, final int column) {
+        switch (kind) {
+            case CallbackLog.ACTIVATE, CallbackLog.DEACTIVATE -> this.notifyState(kind, row);
+            case CallbackLog.EXECUTE_BEFORE -> execute(this.table.beforeExecutions(row, column));
+            default -> execute(this.table.executions(row, column));
+        }
+    }
+
+    /**
+     * Invoke the activate or deactivate callback of a state, one machine at a time with CallbackMode.PARALLEL
+     * as the state object is shared by all of them.
+     * @param kind CallbackLog.ACTIVATE or CallbackLog.DEACTIVATE.
+     * @param row State row.
+     */
+    private void notifyState(final int kind, final int row) {
+        T state = this.state(row);
+        if(this.callbackMode == CallbackMode.PARALLEL) {
+            synchronized (this.locks[row]) {
+                notifyState(kind, state);
+            }
+        } else {
+            notifyState(kind, state);
+        }
+    }
+
+    private static void notifyState(final int kind, final State state) {
+        if(kind == CallbackLog.ACTIVATE) {
+            state.activate();
+        } else {
+            state.deactivate();
+        }
+    }
+
+    private static void execute(final StateFlowExecutionFunction[] functions) {
+        for (int i = 0; i < functions.length; i++) {
+            functions[i].execute();
+        }
+    }
+
+    private void enter(final int row, final int ancestor) {
+        if(row != ancestor) {
+            this.enter(this.table.parent(row), ancestor);
+            this.state(row).activate();
+        }
+    }
+
+    StateId stateId(final int row) {
+        return this.table.state(row);
+    }
+
+    /**
+     * Provide the state for a row, building it on first use.
+     * @param row State row.
+     * @return The state.
+     * @throws IllegalArgumentException If no state is registered for the row.
+     */
+    @SuppressWarnings("unchecked")
+    T state(final int row) {
+        T state = this.states.get(row);
+        if(state == null) {
+            if(this.builders[row] == null) {
+                throw new IllegalArgumentException("No state associated with " + this.table.state(row).value());
+            }
+            synchronized (this.locks[row]) {
+                state = this.states.get(row);
+                if(state == null) {
+                    state = ((StateManager.StateBuilder<T>) this.builders[row]).build();
+                    this.states.set(row, state);
+                }
+            }
+        }
+        return state;
+    }
+}
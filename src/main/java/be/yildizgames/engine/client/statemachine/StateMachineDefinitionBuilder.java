@@ -0,0 +1,198 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Collect the states and flows of a state machine definition.
+ * @author Grégory Van den Borre
+ */
+public class StateMachineDefinitionBuilder<T extends State> {
+
+    final Map<StateId, StateManager.StateBuilder<T>> states = new HashMap<>();
+
+    final Map<StateId, List<StateFlow>> flows = new HashMap<>();
+
+    final Map<StateId, List<StateFlowExecution>> executionFlows = new HashMap<>();
+
+    final List<StateFlow> groupFlows = new ArrayList<>();
+
+    final List<StateFlowExecution> groupExecutionFlows = new ArrayList<>();
+
+    final Map<StateId, StateId> parents = new HashMap<>();
+
+    CallbackMode callbackMode = CallbackMode.PARALLEL;
+
+    StateMachineDefinitionBuilder() {
+        super();
+        this.flows.put(StateIds.ANY.id, new ArrayList<>());
+        this.executionFlows.put(StateIds.ANY.id, new ArrayList<>());
+    }
+
+    /**
+     * Register a state, the same instance is shared by all the machines using the definition.
+     * @param state State to register.
+     * @return This builder.
+     */
+    public final StateMachineDefinitionBuilder<T> registerGameState(final T state) {
+        Objects.requireNonNull(state);
+        return this.registerGameState(state.getStateId(), () -> state);
+    }
+
+    /**
+     * Register a state built the first time a machine using the definition enters it.
+     * @param id State id.
+     * @param builder Builder creating the state.
+     * @return This builder.
+     */
+    public final StateMachineDefinitionBuilder<T> registerGameState(final StateId id, final StateManager.StateBuilder<T> builder) {
+        Objects.requireNonNull(id);
+        Objects.requireNonNull(builder);
+        if(!this.states.containsKey(id)) {
+            this.states.put(id, builder);
+            this.flows.put(id, new ArrayList<>());
+            this.executionFlows.put(id, new ArrayList<>());
+        }
+        return this;
+    }
+
+    /**
+     * Make a state the child of another one, same behavior as in StateManager.
+     * @param state Child state.
+     * @param parent Parent state.
+     * @return This builder.
+     * @throws IllegalArgumentException If one of the states is not registered or if it would create a cycle.
+     */
+    public final StateMachineDefinitionBuilder<T> registerParentState(final StateId state, final StateId parent) {
+        Objects.requireNonNull(state);
+        Objects.requireNonNull(parent);
+        if(!this.states.containsKey(state) || !this.states.containsKey(parent)) {
+            throw new IllegalArgumentException("States must be registered before defining their hierarchy.");
+        }
+        for (StateId p = parent; p != null; p = this.parents.get(p)) {
+            if(p.equals(state)) {
+                throw new IllegalArgumentException("Cycle in the state hierarchy for " + state.value());
+            }
+        }
+        this.parents.put(state, parent);
+        return this;
+    }
+
+    public final StateMachineDefinitionBuilder<T> registerGameStateFlow(final StateFlow flow) {
+        Objects.requireNonNull(flow);
+        if(flow.group != null) {
+            this.groupFlows.add(flow);
+        } else {
+            this.flows.get(flow.state).add(flow);
+        }
+        return this;
+    }
+
+    public final StateMachineDefinitionBuilder<T> registerGameStateFlow(final StateFlowExecution flow) {
+        Objects.requireNonNull(flow);
+        if(flow.group != null) {
+            this.groupExecutionFlows.add(flow);
+        } else {
+            this.executionFlows.get(flow.state).add(flow);
+        }
+        return this;
+    }
+
+    /**
+     * Define where the callbacks run when the machines are processed in parallel, PARALLEL by default.
+     * @param mode Callback mode.
+     * @return This builder.
+     */
+    public final StateMachineDefinitionBuilder<T> callbackMode(final CallbackMode mode) {
+        this.callbackMode = Objects.requireNonNull(mode);
+        return this;
+    }
+
+    /**
+     * Check the registered flows, same analysis as StateManager.validate.
+     * @param initialState State the machines will start from.
+     * @return The analysis report, also providing the distances between states.
+     */
+    public final FlowGraphReport validate(final StateId initialState) {
+        Objects.requireNonNull(initialState);
+        var table = this.compile();
+        return FlowGraphReport.analyze(table, this.flows, this.groupFlows, this.states.keySet(), initialState);
+    }
+
+    /**
+     * Freeze the registered states and flows.
+     * @return The immutable definition.
+     * @throws IllegalArgumentException If a flow goes to a state not registered.
+     */
+    public final StateMachineDefinition<T> build() {
+        this.flows.values().forEach(l -> l.forEach(this::checkTarget));
+        this.groupFlows.forEach(this::checkTarget);
+        return new StateMachineDefinition<>(this, this.compile());
+    }
+
+    private void checkTarget(final StateFlow flow) {
+        if(!this.states.containsKey(flow.nextState)) {
+            throw new IllegalArgumentException("No state associated with " + flow.nextState.value());
+        }
+    }
+
+    private TransitionTable compile() {
+        return TransitionTable.compile(this.flows, this.executionFlows, this.groupFlows, this.groupExecutionFlows, this.parents);
+    }
+
+    /**
+     * Create a definition from a flow graph file written by StateMachineDefinition.write and the states registered in this builder.
+     * The file is memory mapped and its transitions are used directly, no flow object is created.
+     * @param file Flow graph file.
+     * @return The immutable definition.
+     * @throws IOException If the file cannot be read, is not a flow graph or is corrupted.
+     * @throws IllegalArgumentException If flows or parents are registered in this builder, or if a flow of the file goes to a state not registered.
+     */
+    public final StateMachineDefinition<T> load(final Path file) throws IOException {
+        Objects.requireNonNull(file);
+        if(this.flows.values().stream().anyMatch(l -> !l.isEmpty()) || this.executionFlows.values().stream().anyMatch(l -> !l.isEmpty())
+                || !this.groupFlows.isEmpty() || !this.groupExecutionFlows.isEmpty() || !this.parents.isEmpty()) {
+            throw new IllegalArgumentException("Flows and parents are provided by the file.");
+        }
+        TransitionTable table = FlowGraphFormat.load(file);
+        for (int row = 0; row < table.rowCount(); row++) {
+            for (int column = 0; column < table.columnCount(); column++) {
+                int next = table.next(table.cell(row, column));
+                if(next != TransitionTable.NONE && !this.states.containsKey(table.state(next))) {
+                    throw new IllegalArgumentException("No state associated with " + table.state(next).value());
+                }
+            }
+        }
+        return new StateMachineDefinition<>(this, table);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+/**
+ * Lightweight state machine, only storing its current state and relying on a shared definition.
+ * An instance is not thread safe, but different instances can be used from different threads.
+ * @author Grégory Van den Borre
+ */
+public final class StateMachineInstance<T extends State> implements StateFlowEventProcessor {
+
+    private final StateMachineDefinition<T> definition;
+
+    private int row;
+
+    StateMachineInstance(StateMachineDefinition<T> definition, int row) {
+        super();
+        this.definition = definition;
+        this.row = row;
+    }
+
+    @Override
+    public void processEvent(final StateFlowEvent event) {
+        this.row = this.definition.process(this.row, event);
+    }
+
+    @Override
+    public void processEvent(final StateFlowEvents events) {
+        this.processEvent(events.event);
+    }
+
+    public StateId getCurrentStateId() {
+        return this.definition.stateId(this.row);
+    }
+
+    public T getCurrentState() {
+        return this.definition.state(this.row);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Transition counters and callback latencies of a StateManager, recorded without lock and readable from any thread.
+ * @author Grégory Van den Borre
+ */
+public final class StateMachineMetrics implements StateMachineMetricsMXBean {
+
+    /**
+     * Table of the manager and the transition counter of each of its cells, replaced at every compilation.
+     */
+    private volatile Binding binding;
+
+    /**
+     * Counts of the transitions removed from the table by a compilation.
+     */
+    private final Map<String, Long> retired = new ConcurrentHashMap<>();
+
+    private final Map<StateFlowEvent, AtomicLong> unhandled = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram activate = new LatencyHistogram();
+
+    private final LatencyHistogram deactivate = new LatencyHistogram();
+
+    private final LatencyHistogram build = new LatencyHistogram();
+
+    StateMachineMetrics() {
+        super();
+    }
+
+    /**
+     * Use a new table, the counts of the previous table are kept.
+     * @param table Newly compiled table.
+     */
+    synchronized void bind(final TransitionTable table) {
+        var counts = new AtomicLongArray(table.rowCount() * table.columnCount());
+        Binding previous = this.binding;
+        if(previous != null) {
+            for (int row = 0; row < previous.table.rowCount(); row++) {
+                for (int column = 0; column < previous.table.columnCount(); column++) {
+                    long count = previous.counts.get(row * previous.table.columnCount() + column);
+                    if(count != 0) {
+                        int r = table.row(previous.table.state(row));
+                        int c = table.column(previous.table.event(column));
+                        if(r == TransitionTable.NONE || c == TransitionTable.NONE) {
+                            this.retired.merge(key(previous.table.state(row), previous.table.event(column)), count, Long::sum);
+                        } else {
+                            counts.set(r * table.columnCount() + c, count);
+                        }
+                    }
+                }
+            }
+        }
+        this.binding = new Binding(table, counts);
+    }
+
+    void transition(final int row, final int column) {
+        Binding b = this.binding;
+        b.counts.incrementAndGet(row * b.table.columnCount() + column);
+    }
+
+    void unhandled(final StateFlowEvent event) {
+        AtomicLong count = this.unhandled.get(event);
+        if(count == null) {
+            count = this.unhandled.computeIfAbsent(event, e -> new AtomicLong());
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * @param from Initial state.
+     * @param event Event.
+     * @return The number of times the event was handled in the initial state, by a transition or an execution flow.
+     */
+    public long getTransitionCount(final StateId from, final StateFlowEvent event) {
+        Binding b = this.binding;
+        int row = b == null ? TransitionTable.NONE : b.table.row(from);
+        int column = b == null ? TransitionTable.NONE : b.table.column(event);
+        if(row == TransitionTable.NONE || column == TransitionTable.NONE) {
+            return this.retired.getOrDefault(key(from, event), 0L);
+        }
+        return b.counts.get(row * b.table.columnCount() + column);
+    }
+
+    /**
+     * @param event Event.
+     * @return The number of times the event was received without any flow to handle it.
+     */
+    public long getUnhandledCount(final StateFlowEvent event) {
+        AtomicLong count = this.unhandled.get(event);
+        return count == null ? 0 : count.get();
+    }
+
+    public LatencyHistogram getActivateHistogram() {
+        return this.activate;
+    }
+
+    public LatencyHistogram getDeactivateHistogram() {
+        return this.deactivate;
+    }
+
+    public LatencyHistogram getBuildHistogram() {
+        return this.build;
+    }
+
+    /**
+     * Register these metrics in the platform MBean server.
+     * @param name Object name to use, for example "be.yildizgames:type=StateMachine,name=main".
+     * @return The registered object name.
+     * @throws IllegalStateException If the registration failed.
+     */
+    public ObjectName registerMBean(final String name) {
+        try {
+            var objectName = new ObjectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getTransitionCounts() {
+        var result = new TreeMap<>(this.retired);
+        Binding b = this.binding;
+        if(b != null) {
+            for (int row = 0; row < b.table.rowCount(); row++) {
+                for (int column = 0; column < b.table.columnCount(); column++) {
+                    long count = b.counts.get(row * b.table.columnCount() + column);
+                    if(count != 0) {
+                        result.merge(key(b.table.state(row), b.table.event(column)), count, Long::sum);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getUnhandledCounts() {
+        var result = new TreeMap<String, Long>();
+        this.unhandled.forEach((e, c) -> result.put(String.valueOf(e.value()), c.get()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getActivateLatency() {
+        return summary(this.activate);
+    }
+
+    @Override
+    public Map<String, Long> getDeactivateLatency() {
+        return summary(this.deactivate);
+    }
+
+    @Override
+    public Map<String, Long> getBuildLatency() {
+        return summary(this.build);
+    }
+
+    private static Map<String, Long> summary(final LatencyHistogram histogram) {
+        var result = new HashMap<String, Long>();
+        result.put("count", histogram.getCount());
+        result.put("mean", Math.round(histogram.getMean()));
+        result.put("p50", histogram.getValueAtPercentile(50));
+        result.put("p99", histogram.getValueAtPercentile(99));
+        result.put("max", histogram.getMax());
+        return result;
+    }
+
+    private static String key(final StateId state, final StateFlowEvent event) {
+        return state.value() + ":" + event.value();
+    }
+
+    private record Binding(TransitionTable table, AtomicLongArray counts) {
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Many state machines sharing a definition, stored as an array of current state rows indexed by machine.
+ * A pool is not thread safe, but different machines of the pool can be used from different threads,
+ * unless the definition has timed flows: all the machine timers share a single timer wheel.
+ * @author Grégory Van den Borre
+ */
+public final class StateMachinePool<T extends State> {
+
+    private final StateMachineDefinition<T> definition;
+
+    /**
+     * Current row for each machine.
+     */
+    private final int[] rows;
+
+    public StateId getCurrentStateId(final int machine) {
+        return this.definition.stateId(this.rows[machine]);
+    }
+
+    public T getCurrentState(final int machine) {
+        return this.definition.state(this.rows[machine]);
+    }
+
+    public int size() {
+        return this.rows.length;
+    }
+
+    /**
+     * Timers of the timed flows, null if the definition has none.
+     */
+    private final StateTimers timers;
+
+    StateMachinePool(StateMachineDefinition<T> definition, int size, int row) {
+        super();
+        this.definition = definition;
+        this.rows = new int[size];
+        Arrays.fill(this.rows, row);
+        if(definition.hasTimeouts()) {
+            this.timers = new Timers(size);
+            for (int machine = 0; machine < size; machine++) {
+                this.timers.reset(machine);
+            }
+        } else {
+            this.timers = null;
+        }
+    }
+
+    /**
+     * Apply an event to a machine of the pool.
+     * @param machine Index of the machine.
+     * @param event Event to process.
+     */
+    public void processEvent(final int machine, final StateFlowEvent event) {
+        int row = this.rows[machine];
+        this.rows[machine] = this.definition.process(row, event);
+        if(this.timers != null && this.rows[machine] != row) {
+            this.timers.reset(machine);
+        }
+    }
+
+    public void processEvent(final int machine, final StateFlowEvents event) {
+        this.processEvent(machine, event.event);
+    }
+
+    /**
+     * Process the pending events of all the machines in parallel.
+     * The events of a machine are processed in order by a single task, the callbacks run on the workers or on the calling thread
+     * depending on the definition callback mode.
+     * @param events Pending event values for each machine, an entry can be null if the machine has no event.
+     * @param executor Pool running the tasks.
+     * @throws IllegalArgumentException If the events array size is not the pool size.
+     */
+    public void processEvents(final int[][] events, final ForkJoinPool executor) {
+        if(events.length != this.rows.length) {
+            throw new IllegalArgumentException("Expected events for " + this.rows.length + " machines, got " + events.length);
+        }
+        if(this.timers == null) {
+            this.definition.processParallel(this.rows, events, executor);
+            return;
+        }
+        int[] before = this.rows.clone();
+        this.definition.processParallel(this.rows, events, executor);
+        for (int machine = 0; machine < this.rows.length; machine++) {
+            if(this.rows[machine] != before[machine]) {
+                this.timers.reset(machine);
+            }
+        }
+    }
+
+    /**
+     * Advance the timers of the timed flows, a StateFlowEvents.TIMEOUT event is processed for each machine whose timer expires.
+     * The timer of a machine is armed when it enters a state and cancelled when it leaves it.
+     * @param elapsedNanos Time elapsed since the previous tick.
+     */
+    public void tick(final long elapsedNanos) {
+        if(this.timers != null) {
+            this.timers.advance(elapsedNanos);
+        }
+    }
+
+    /**
+     * Timers of the machines, the owner of a timer is the machine index.
+     */
+    private final class Timers extends StateTimers {
+
+        private Timers(final int count) {
+            super(count);
+        }
+
+        @Override
+        boolean timeout(final int owner, final long elapsed) {
+            int row = StateMachinePool.this.rows[owner];
+            StateMachinePool.this.rows[owner] = StateMachinePool.this.definition.process(row, StateFlowEvents.TIMEOUT.event, null, elapsed);
+            return StateMachinePool.this.rows[owner] != row;
+        }
+
+        @Override
+        long delay(final int owner) {
+            return StateMachinePool.this.definition.timeout(StateMachinePool.this.rows[owner]);
+        }
+
+        @Override
+        long nextDelay(final int owner, final long elapsed) {
+            return StateMachinePool.this.definition.nextTimeout(StateMachinePool.this.rows[owner], elapsed);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * State machine made of orthogonal regions, each region has its own definition and current state.
+ * The active configuration is an int array holding the current row of each region, an event is only dispatched to the regions
+ * having a flow for it, found with a bit mask precomputed for each event.
+ * Regions are built from StateMachineDefinition only, a StateManager cannot be used as a region: its states hold their own
+ * per-instance data and callbacks, while a definition shares its states and tables between machines.
+ * A machine is not thread safe.
+ * @author Grégory Van den Borre
+ */
+public final class StateMachineRegions<T extends State> implements StateFlowEventProcessor {
+
+    /**
+     * Maximum number of regions, one bit of the event masks per region.
+     */
+    static final int MAX_REGIONS = Long.SIZE;
+
+    private final List<StateMachineDefinition<T>> definitions;
+
+    /**
+     * Current row of each region.
+     */
+    private final int[] rows;
+
+    /**
+     * Regions having a flow for each event ordinal.
+     */
+    private final long[] masks;
+
+    public StateId getCurrentStateId(final int region) {
+        return this.definitions.get(region).stateId(this.rows[region]);
+    }
+
+    public T getCurrentState(final int region) {
+        return this.definitions.get(region).state(this.rows[region]);
+    }
+
+    /**
+     * @return The current state id of every region, in region order.
+     */
+    public List<StateId> getConfiguration() {
+        return IntStream.range(0, this.rows.length).mapToObj(this::getCurrentStateId).toList();
+    }
+
+    /**
+     * @param id State id.
+     * @return True if the state is the current state of a region.
+     */
+    public boolean isActive(final StateId id) {
+        for (int region = 0; region < this.rows.length; region++) {
+            if(this.definitions.get(region).stateId(this.rows[region]).equals(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int regionCount() {
+        return this.rows.length;
+    }
+
+    /**
+     * Timers of the timed flows, null if no region has any.
+     */
+    private final StateTimers timers;
+
+    StateMachineRegions(StateMachineRegionsBuilder<T> builder) {
+        super();
+        int count = builder.definitions.size();
+        this.definitions = List.copyOf(builder.definitions);
+        this.rows = new int[count];
+        for (int region = 0; region < count; region++) {
+            this.rows[region] = this.definitions.get(region).start(builder.initialStates.get(region));
+        }
+        long[] eventMasks = new long[0];
+        for (int region = 0; region < count; region++) {
+            for (StateFlowEvent event : this.definitions.get(region).events()) {
+                int ordinal = event.ordinal();
+                if(ordinal >= eventMasks.length) {
+                    eventMasks = Arrays.copyOf(eventMasks, ordinal + 1);
+                }
+                eventMasks[ordinal] |= 1L << region;
+            }
+        }
+        this.masks = eventMasks;
+        if(this.definitions.stream().anyMatch(StateMachineDefinition::hasTimeouts)) {
+            this.timers = new Timers(count);
+            for (int region = 0; region < count; region++) {
+                this.timers.reset(region);
+            }
+        } else {
+            this.timers = null;
+        }
+    }
+
+    public static <T extends State> StateMachineRegionsBuilder<T> builder() {
+        return new StateMachineRegionsBuilder<>();
+    }
+
+    /**
+     * Apply an event to every region having a flow for it, in region order.
+     * @param event Event to process.
+     */
+    @Override
+    public void processEvent(final StateFlowEvent event) {
+        int ordinal = event.findOrdinal();
+        if(ordinal < 0 || ordinal >= this.masks.length) {
+            return;
+        }
+        for (long mask = this.masks[ordinal]; mask != 0; mask &= mask - 1) {
+            this.process(Long.numberOfTrailingZeros(mask), event);
+        }
+    }
+
+    @Override
+    public void processEvent(final StateFlowEvents events) {
+        this.processEvent(events.event);
+    }
+
+    /**
+     * Advance the timers of the timed flows, a StateFlowEvents.TIMEOUT event is processed by each region whose timer expires.
+     * The timer of a region is armed when the region enters a state and cancelled when it leaves it.
+     * @param elapsedNanos Time elapsed since the previous tick.
+     */
+    public void tick(final long elapsedNanos) {
+        if(this.timers != null) {
+            this.timers.advance(elapsedNanos);
+        }
+    }
+
+    private void process(final int region, final StateFlowEvent event) {
+        int row = this.rows[region];
+        this.rows[region] = this.definitions.get(region).process(row, event);
+        if(this.timers != null && this.rows[region] != row) {
+            this.timers.reset(region);
+        }
+    }
+
+    /**
+     * Timers of the regions, the owner of a timer is the region index.
+     */
+    private final class Timers extends StateTimers {
+
+        private Timers(final int count) {
+            super(count);
+        }
+
+        @Override
+        boolean timeout(final int owner, final long elapsed) {
+            int row = StateMachineRegions.this.rows[owner];
+            StateMachineRegions.this.rows[owner] = StateMachineRegions.this.definitions.get(owner).process(row, StateFlowEvents.TIMEOUT.event, null, elapsed);
+            return StateMachineRegions.this.rows[owner] != row;
+        }
+
+        @Override
+        long delay(final int owner) {
+            return StateMachineRegions.this.definitions.get(owner).timeout(StateMachineRegions.this.rows[owner]);
+        }
+
+        @Override
+        long nextDelay(final int owner, final long elapsed) {
+            return StateMachineRegions.this.definitions.get(owner).nextTimeout(StateMachineRegions.this.rows[owner], elapsed);
+        }
+    }
+}
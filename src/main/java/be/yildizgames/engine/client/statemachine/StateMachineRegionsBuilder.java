@@ -0,0 +1,75 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Collect the regions of a StateMachineRegions, each region being a definition with its initial state.
+ * @author Grégory Van den Borre
+ */
+public final class StateMachineRegionsBuilder<T extends State> {
+
+    final List<StateMachineDefinition<T>> definitions = new ArrayList<>();
+
+    final List<StateId> initialStates = new ArrayList<>();
+
+    StateMachineRegionsBuilder() {
+        super();
+    }
+
+    /**
+     * Add a region, regions are indexed in the order they are added.
+     * @param definition Flows of the region.
+     * @param initialState Initial state of the region.
+     * @return This builder.
+     * @throws IllegalArgumentException If the maximum number of regions is reached.
+     */
+    public StateMachineRegionsBuilder<T> region(final StateMachineDefinition<T> definition, final StateId initialState) {
+        Objects.requireNonNull(definition);
+        Objects.requireNonNull(initialState);
+        if(this.definitions.size() == StateMachineRegions.MAX_REGIONS) {
+            throw new IllegalArgumentException("A machine cannot have more than " + StateMachineRegions.MAX_REGIONS + " regions.");
+        }
+        this.definitions.add(definition);
+        this.initialStates.add(initialState);
+        return this;
+    }
+
+    /**
+     * Create the machine, the initial state of every region and its parents are activated.
+     * @return The created machine.
+     * @throws IllegalArgumentException If no region is defined, or an initial state is not in its region.
+     */
+    public StateMachineRegions<T> build() {
+        if(this.definitions.isEmpty()) {
+            throw new IllegalArgumentException("No region defined.");
+        }
+        return new StateMachineRegions<>(this);
+    }
+}
@@ -25,18 +25,58 @@
 
 package be.yildizgames.engine.client.statemachine;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
+ * The states and flows must be registered from the thread processing the events: registering a flow only drops the compiled
+ * table, which is rebuilt into new immutable arrays by the next event, so processing an event needs no lock.
+ * Only postEvent, the listener registration and the metrics can be used from other threads.
  * @author Grégory Van den Borre
  */
 public class StateManager <T extends State> implements StateFlowEventProcessor {
 
+    /**
+     * Path value for a transition walking the parents instead of using a precomputed path.
+     */
+    private static final int WALK = -2;
+
+    /**
+     * Number of entries kept by the transition trace enabled by default.
+     */
+    private static final int DEFAULT_TRACE_CAPACITY = 1023;
+
+    /**
+     * First bytes of a snapshot.
+     */
+    private static final int SNAPSHOT_MAGIC = 0x59534d53;
+
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private static final int PENDING_BATCH = 256;
+
     /**
      * The current activated game state, all other one are deactivated.
      */
@@ -49,6 +89,11 @@ public class StateManager <T extends State> implements StateFlowEventProcessor {
 
     private final Map<StateId, StateBuilder<T>> stateToBuild = new HashMap<>();
 
+    /**
+     * Builders of all the states registered with one, kept to rebuild evicted states.
+     */
+    private final Map<StateId, StateBuilder<T>> builders = new HashMap<>();
+
     /**
      * The list of all transitions between game states.
      */
@@ -56,6 +101,145 @@ public class StateManager <T extends State> implements StateFlowEventProcessor {
 
     private final Map<StateId, List<StateFlowExecution>> executionFlows = new HashMap<>();
 
+    /**
+     * Transitions from a state group, in registration order.
+     */
+    private final List<StateFlow> groupFlows = new ArrayList<>();
+
+    private final List<StateFlowExecution> groupExecutionFlows = new ArrayList<>();
+
+    /**
+     * Parent of the child states.
+     */
+    private final Map<StateId, StateId> parents = new HashMap<>();
+
+    /**
+     * Parents of the initial state already activated, null once the initial state is left.
+     */
+    private Set<StateId> initialParents = new HashSet<>();
+
+    /**
+     * Compiled form of the flows, null when a flow was registered since the last compilation.
+     * Only used by the thread processing the events, like the registered flows it is compiled from.
+     */
+    private TransitionTable table;
+
+    /**
+     * Row of the current state in the compiled table.
+     */
+    private int currentRow = TransitionTable.NONE;
+
+    /**
+     * Events posted from other threads, null until the queue is enabled.
+     */
+    private volatile StateFlowEventQueue queue;
+
+    /**
+     * Events drained from the queue and waiting to be processed.
+     */
+    private int[] pending = new int[PENDING_BATCH];
+
+    /**
+     * Coalescing policy for each event ordinal, null if no policy is defined.
+     */
+    private CoalescingPolicy[] coalescing;
+
+    /**
+     * Frame in which each event ordinal was last seen while coalescing.
+     */
+    private int[] seen;
+
+    private int frame;
+
+    /**
+     * True for the pending events discarded by the coalescing.
+     */
+    private boolean[] dropped = new boolean[PENDING_BATCH];
+
+    /**
+     * Build the lazily registered states in background, null until enabled.
+     */
+    private StatePrebuilder<T> prebuilder;
+
+    /**
+     * True once an AsyncState is registered, transitions are only checked for asynchronous states in that case.
+     */
+    private boolean asyncStates;
+
+    /**
+     * Asynchronous transition in progress, null if there is none.
+     */
+    private CompletableFuture<StateId> transition;
+
+    /**
+     * Steps of the asynchronous transition ready to run, queued by the threads completing the AsyncState futures
+     * and run by the thread processing the events.
+     */
+    private final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Executor running the steps of the asynchronous transitions on the thread processing the events.
+     */
+    private final Executor managerThread = this.completions::add;
+
+    /**
+     * Events received during an asynchronous transition.
+     */
+    private int[] deferred = new int[0];
+
+    private int deferredHead;
+
+    private int deferredSize;
+
+    /**
+     * Maximum cost of the inactive evictable states kept in memory, negative if eviction is disabled.
+     */
+    private long evictionBudget = -1;
+
+    /**
+     * Cost of the inactive evictable states, in least recently deactivated first order.
+     */
+    private final Map<StateId, Long> inactive = new LinkedHashMap<>();
+
+    private long inactiveCost;
+
+    /**
+     * Metrics being recorded, null if they are disabled.
+     */
+    private StateMachineMetrics metrics;
+
+    /**
+     * Last processed events, null if the trace is disabled.
+     */
+    private TransitionTrace trace = new TransitionTrace(DEFAULT_TRACE_CAPACITY);
+
+    /**
+     * Log recording the received events, null if they are not recorded.
+     */
+    private EventLog eventLog;
+
+    /**
+     * Timers of the timed flows, null until a state with a timed flow is entered.
+     */
+    private StateTimers timers;
+
+    /**
+     * State for which the timer was armed.
+     */
+    private StateId timerState;
+
+    /**
+     * Time spent in the current state while a timeout is processed, Long.MAX_VALUE otherwise so every timed flow is considered.
+     */
+    private long elapsed = Long.MAX_VALUE;
+
+    /**
+     * Registered listeners, the array is replaced on every registration and never modified.
+     */
+    private volatile Listener[] listeners = new Listener[0];
+
+    private final Object listenerLock = new Object();
+
     private StateManager(T initialState) {
         super();
         this.flows.put(StateIds.ANY.id, new ArrayList<>());
@@ -68,18 +252,24 @@ public class StateManager <T extends State> implements StateFlowEventProcessor {
     }
 
     /**
-     * Register a new game state.
+     * Register a new game state, it is deactivated unless it is an AsyncState, which must be registered inactive
+     * so its registration never blocks the calling thread.
      * @param state State to register.
      */
     public final void registerGameState(final T state) {
         Objects.requireNonNull(state);
         if(!this.states.containsKey(state.getStateId())) {
             this.states.put(state.getStateId(), state);
-            state.deactivate();
+            if(state instanceof AsyncState) {
+                this.asyncStates = true;
+            } else {
+                state.deactivate();
+            }
         }
         if(!this.flows.containsKey(state.getStateId())) {
             this.executionFlows.put(state.getStateId(), new ArrayList<>());
             this.flows.put(state.getStateId(), new ArrayList<>());
+            this.table = null;
         }
     }
 
@@ -87,8 +277,228 @@ public class StateManager <T extends State> implements StateFlowEventProcessor {
         Objects.requireNonNull(builder);
         if(!this.states.containsKey(id) && !this.stateToBuild.containsKey(id)) {
             this.stateToBuild.put(id, builder);
+            this.builders.put(id, builder);
             this.executionFlows.put(id, new ArrayList<>());
             this.flows.put(id, new ArrayList<>());
+            this.table = null;
+            if(this.prebuilder != null) {
+                this.prebuilder.schedule(id, builder);
+            }
+        }
+    }
+
+    /**
+     * Build the states registered with a builder ahead of time, instead of building them on the first transition.
+     * States reachable in one hop from the current state are built first.
+     * A transition to a state still being built waits for it, a transition to a state whose build did not start builds it directly.
+     * @param executor Executor running the builds, virtual threads can be used.
+     */
+    public final void enablePrebuild(final Executor executor) {
+        Objects.requireNonNull(executor);
+        this.prebuilder = new StatePrebuilder<>(executor);
+        this.prioritizePrebuild();
+        this.stateToBuild.forEach(this.prebuilder::schedule);
+    }
+
+    /**
+     * Limit the memory used by inactive states, when the total cost of the inactive EvictableState registered with a builder
+     * exceeds the budget, the least recently deactivated ones are released and will be rebuilt with their builder when needed.
+     * @param budget Maximum total cost of the inactive states, as reported by EvictableState.getMemoryCost.
+     */
+    public final void enableEviction(final long budget) {
+        if(budget < 0) {
+            throw new IllegalArgumentException("Negative budget: " + budget);
+        }
+        this.evictionBudget = budget;
+        this.evict();
+    }
+
+    /**
+     * Start recording the transition counters and the latencies of the state callbacks, nothing is recorded until this call.
+     * @return The recorded metrics, they can be read from any thread.
+     */
+    public final StateMachineMetrics enableMetrics() {
+        if(this.metrics == null) {
+            this.metrics = new StateMachineMetrics();
+            this.metrics.bind(this.table());
+        }
+        return this.metrics;
+    }
+
+    /**
+     * @return The recorded metrics, or null if they are not enabled.
+     */
+    public final StateMachineMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Register a listener notified of every transition.
+     * Listeners are stored in a copy-on-write array, they can be registered from any thread.
+     * @param listener Listener to register.
+     */
+    public final void addTransitionListener(final TransitionListener listener) {
+        this.addTransitionListener(listener, List.of(), List.of());
+    }
+
+    /**
+     * Register a listener only notified of the transitions involving some states or events.
+     * @param listener Listener to register.
+     * @param states States to leave or enter to notify the listener, empty for all.
+     * @param events Events to notify the listener, empty for all.
+     */
+    public final void addTransitionListener(final TransitionListener listener, final Collection<StateId> states, final Collection<StateFlowEvent> events) {
+        Objects.requireNonNull(listener);
+        var entry = new Listener(listener,
+                mask(states.stream().mapToInt(StateId::ordinal).toArray()),
+                mask(events.stream().mapToInt(StateFlowEvent::ordinal).toArray()));
+        synchronized (this.listenerLock) {
+            Listener[] current = this.listeners;
+            Listener[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = entry;
+            this.listeners = updated;
+        }
+    }
+
+    /**
+     * Remove every registration of a listener.
+     * @param listener Listener to remove.
+     */
+    public final void removeTransitionListener(final TransitionListener listener) {
+        synchronized (this.listenerLock) {
+            this.listeners = Arrays.stream(this.listeners).filter(l -> l.listener != listener).toArray(Listener[]::new);
+        }
+    }
+
+    /**
+     * @param ordinals Ordinals to set.
+     * @return A bit set with the ordinals, null if there is none.
+     */
+    private static long[] mask(final int[] ordinals) {
+        if(ordinals.length == 0) {
+            return null;
+        }
+        long[] mask = new long[Arrays.stream(ordinals).max().orElse(0) / Long.SIZE + 1];
+        for (int ordinal : ordinals) {
+            mask[ordinal / Long.SIZE] |= 1L << ordinal;
+        }
+        return mask;
+    }
+
+    /**
+     * Notify the listeners of a transition, the filters are tested with the ordinals precomputed in the table.
+     * @param from Row of the previous state.
+     * @param column Column of the event, or NONE if it is not in the table.
+     * @param event Event value.
+     */
+    private void notifyTransition(final int from, final int column, final int event) {
+        Listener[] current = this.listeners;
+        if(current.length == 0) {
+            return;
+        }
+        TransitionTable t = this.table;
+        int fromOrdinal = t.stateOrdinal(from);
+        int toOrdinal = t.stateOrdinal(this.currentRow);
+        int eventOrdinal = column == TransitionTable.NONE ? -1 : t.eventOrdinal(column);
+        int fromValue = t.state(from).value();
+        int to = this.currentState.value();
+        for (int i = 0; i < current.length; i++) {
+            Listener l = current[i];
+            if((l.states == null || Listener.contains(l.states, fromOrdinal) || Listener.contains(l.states, toOrdinal))
+                    && (l.events == null || Listener.contains(l.events, eventOrdinal))) {
+                l.listener.onTransition(fromValue, event, to);
+            }
+        }
+    }
+
+    /**
+     * Replace the transition trace, a trace of the last 1023 events is enabled by default.
+     * @param capacity Number of events to keep.
+     * @return The new trace.
+     */
+    public final TransitionTrace enableTrace(final int capacity) {
+        this.trace = new TransitionTrace(capacity);
+        return this.trace;
+    }
+
+    public final void disableTrace() {
+        this.trace = null;
+    }
+
+    /**
+     * @return The trace of the last processed events, or null if it is disabled.
+     */
+    public final TransitionTrace getTrace() {
+        return this.trace;
+    }
+
+    private void afterTransition() {
+        this.initialParents = null;
+        this.armTimer();
+        this.prioritizePrebuild();
+        if(this.evictionBudget >= 0 && this.transition == null) {
+            this.evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<StateId, Long>> eldest = this.inactive.entrySet().iterator();
+        while (this.inactiveCost > this.evictionBudget && eldest.hasNext()) {
+            Map.Entry<StateId, Long> entry = eldest.next();
+            eldest.remove();
+            this.inactiveCost -= entry.getValue();
+            T state = this.states.remove(entry.getKey());
+            this.stateToBuild.put(entry.getKey(), this.builders.get(entry.getKey()));
+            ((EvictableState) state).release();
+        }
+    }
+
+    /**
+     * Track a state becoming inactive, to be evicted if needed.
+     * @param id Deactivated state id.
+     */
+    private void deactivated(final StateId id) {
+        if(this.evictionBudget >= 0 && this.states.get(id) instanceof EvictableState e && this.builders.containsKey(id)) {
+            long cost = e.getMemoryCost();
+            Long previous = this.inactive.remove(id);
+            this.inactiveCost += cost - (previous == null ? 0 : previous);
+            this.inactive.put(id, cost);
+        }
+    }
+
+    /**
+     * Track a state becoming active, it can no longer be evicted.
+     * @param id Activated state id.
+     */
+    private void activated(final StateId id) {
+        if(!this.inactive.isEmpty()) {
+            Long cost = this.inactive.remove(id);
+            if(cost != null) {
+                this.inactiveCost -= cost;
+            }
+        }
+    }
+
+    /**
+     * Give priority to the states reachable in one hop from the current state.
+     * An evicted state is only scheduled again once it is reachable in one hop, so the prebuilt states kept out of the
+     * eviction budget are limited to the next possible states.
+     */
+    private void prioritizePrebuild() {
+        if(this.prebuilder != null) {
+            TransitionTable t = this.table();
+            if(this.currentRow == TransitionTable.NONE) {
+                return;
+            }
+            int[] next = t.targets(this.currentRow);
+            for (int row : next) {
+                StateId id = t.state(row);
+                StateBuilder<T> builder = this.stateToBuild.get(id);
+                if(builder != null) {
+                    this.prebuilder.schedule(id, builder);
+                }
+            }
+            this.prebuilder.prioritize(t, next);
         }
     }
 
@@ -104,80 +514,1127 @@ public class StateManager <T extends State> implements StateFlowEventProcessor {
     private void registerInitialGameState(final T state) {
         Objects.requireNonNull(state);
         this.states.put(state.getStateId(), state);
+        this.asyncStates |= state instanceof AsyncState;
         this.flows.put(state.getStateId(), new ArrayList<>());
         this.executionFlows.put(state.getStateId(), new ArrayList<>());
         state.activate();
         this.currentState = state.getStateId();
     }
 
+    /**
+     * Once the flows are compiled, processing an event does not allocate any object, except to build a lazily registered state.
+     * @param event Event to process.
+     */
     @Override
     public final void processEvent(final StateFlowEvent event) {
-        this.flows.get(this.currentState)
-                .stream()
-                .filter(f -> f.isForEvent(event))
-                .findFirst()
-                .ifPresentOrElse(this::setCurrentStateFromFlow, () -> getFromAny(event));
-        this.executionFlows.get(this.currentState)
-                .stream()
-                .filter(f -> f.isForEvent(event))
-                .findFirst()
-                .ifPresentOrElse(e -> e.function.execute(), () -> getFromAnyExecute(event));
+        this.process(event.value());
     }
 
+    /**
+     * The event is recorded in the event log with the elapsed time, so replaying the log considers the same timed flows.
+     * @param elapsedNanos Time spent in the current state in nanoseconds.
+     */
     @Override
-    public final void processEvent(StateFlowEvents events) {
-        processEvent(events.event);
+    public final void processTimeout(final long elapsedNanos) {
+        if(this.eventLog != null) {
+            this.eventLog.addTimeout(elapsedNanos);
+        }
+        this.elapsed = elapsedNanos;
+        try {
+            this.step(StateFlowEvents.TIMEOUT.event.value());
+        } finally {
+            this.elapsed = Long.MAX_VALUE;
+        }
     }
 
-    public final void registerGameStateFlow(final StateFlow flow) {
-        Objects.requireNonNull(flow);
-        this.flows.get(flow.state).add(flow);
+    /**
+     * Process an event, deferring it if an asynchronous transition is running.
+     * @param event Event value.
+     */
+    private void process(final int event) {
+        if(this.eventLog != null) {
+            this.eventLog.add(event);
+        }
+        this.step(event);
     }
 
-    public final void registerGameStateFlow(final StateFlowExecution flow) {
-        Objects.requireNonNull(flow);
-        this.executionFlows.get(flow.state).add(flow);
+    /**
+     * Dispatch an event already logged, deferring it if an asynchronous transition is running.
+     * @param event Event value.
+     */
+    private void step(final int event) {
+        if(this.transition != null && this.inTransition()) {
+            this.defer(event);
+            return;
+        }
+        this.dispatch(event);
     }
 
-    public final T getCurrentState() {
-        return this.states.get(this.currentState);
+    private void dispatch(final int event) {
+        TransitionTable t = this.table();
+        int column = t.column(event);
+        if(column == TransitionTable.NONE) {
+            if(this.metrics != null) {
+                this.metrics.unhandled(StateFlowEvent.valueOf(event));
+            }
+            if(this.trace != null) {
+                this.trace.record(this.currentState.value(), event, this.currentState.value());
+            }
+            return;
+        }
+        int from = this.currentState.value();
+        int fromRow = this.currentRow;
+        StateFlowExecutionFunction[] before = t.beforeExecutions(this.currentRow, column);
+        if(before != null) {
+            this.execute(before, event);
+        }
+        int cell = t.cell(this.currentRow, column, this.elapsed);
+        int next = t.next(cell);
+        if(this.metrics != null) {
+            this.count(this.currentRow, column, next, event);
+        }
+        if(next != TransitionTable.NONE) {
+            if(JfrTransitionEvent.enabled()) {
+                this.recordTransition(next, t.path(cell), event);
+            } else {
+                this.setCurrentState(next, t.path(cell));
+            }
+        }
+        if(this.trace != null) {
+            this.trace.record(from, event, this.currentState.value());
+        }
+        if(next != TransitionTable.NONE) {
+            this.notifyTransition(fromRow, column, event);
+        }
+        StateFlowExecutionFunction[] after = t.executions(this.currentRow, column);
+        if(after != null) {
+            this.execute(after, event);
+        }
     }
 
+    /**
+     * Change the current state, recording a flight recorder event, completed with the transition if it is asynchronous.
+     * @param row Row of the next state.
+     * @param path Precomputed path of the transition, or NONE.
+     * @param event Event value causing the transition.
+     */
+    private void recordTransition(final int row, final int path, final int event) {
+        var e = new JfrTransitionEvent();
+        e.from = this.currentState.value();
+        e.to = this.table.state(row).value();
+        e.event = event;
+        e.begin();
+        if(path == WALK) {
+            this.walk(row);
+        } else {
+            this.setCurrentState(row, path);
+        }
+        if(this.transition != null && !this.transition.isDone()) {
+            this.transition.whenComplete((s, x) -> e.commit());
+        } else {
+            e.commit();
+        }
+    }
 
-    private void setCurrentStateFromFlow(final StateFlow f) {
-        this.setCurrentState(f.nextState);
+    private void execute(final StateFlowExecutionFunction[] functions, final int event) {
+        for (int i = 0; i < functions.length; i++) {
+            this.execute(functions[i], event);
+        }
     }
 
-    private void setCurrentState(final StateId id) {
-        Optional.ofNullable(currentState).ifPresent(c -> states.get(this.currentState).deactivate());
-        if(!this.states.containsKey(id)) {
-            if(this.stateToBuild.containsKey(id)) {
-                this.registerGameState(this.stateToBuild.remove(id).build());
-            } else {
-                throw new IllegalArgumentException("No state associated with " + id.value());
+    private void execute(final StateFlowExecutionFunction function, final int event) {
+        if(JfrExecutionEvent.enabled()) {
+            var e = new JfrExecutionEvent();
+            e.state = this.currentState.value();
+            e.event = event;
+            e.begin();
+            function.execute();
+            e.commit();
+        } else {
+            function.execute();
+        }
+    }
+
+    @Override
+    public final void processEvent(StateFlowEvents events) {
+        processEvent(events.event);
+    }
+
+    /**
+     * Process several events in a single pass over the transition table.
+     * Only the net transitions are applied: intermediate states are neither activated nor built,
+     * the current state is only changed before running an execution flow and at the end of the batch.
+     * Once an AsyncState is registered, the events are processed one by one like with processEvent,
+     * so the asynchronous transitions are never waited for.
+     * @param events Event values.
+     * @param offset Position of the first event to process.
+     * @param length Number of events to process.
+     */
+    @Override
+    public final void processEvents(final int[] events, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, events.length);
+        if(this.eventLog != null) {
+            for (int i = offset; i < offset + length; i++) {
+                this.eventLog.add(events[i]);
+            }
+        }
+        if(this.transition != null && this.inTransition()) {
+            for (int i = offset; i < offset + length; i++) {
+                this.defer(events[i]);
+            }
+            return;
+        }
+        if(this.asyncStates) {
+            for (int i = offset; i < offset + length; i++) {
+                this.step(events[i]);
             }
+            return;
+        }
+        this.table();
+        int row = this.currentRow;
+        for (int i = offset; i < offset + length; i++) {
+            row = this.batchStep(row, events[i]);
         }
-        this.states.get(id).activate();
-        this.currentState = id;
+        this.moveTo(row, length == 0 ? 0 : events[offset + length - 1]);
     }
 
-    private void getFromAny(final StateFlowEvent event) {
-        this.flows.get(StateIds.ANY.id)
-                .stream()
-                .filter(f -> f.isForEvent(event))
-                .findFirst()
-                .ifPresent(this::setCurrentStateFromFlow);
+    @Override
+    public final void processEvents(final IntBuffer events) {
+        if(this.eventLog != null) {
+            for (int i = events.position(); i < events.limit(); i++) {
+                this.eventLog.add(events.get(i));
+            }
+        }
+        if(this.transition != null && this.inTransition()) {
+            while (events.hasRemaining()) {
+                this.defer(events.get());
+            }
+            return;
+        }
+        if(this.asyncStates) {
+            while (events.hasRemaining()) {
+                this.step(events.get());
+            }
+            return;
+        }
+        this.table();
+        int row = this.currentRow;
+        int last = 0;
+        while (events.hasRemaining()) {
+            last = events.get();
+            row = this.batchStep(row, last);
+        }
+        this.moveTo(row, last);
     }
 
-    private void getFromAnyExecute(final StateFlowEvent event) {
-        this.executionFlows.get(StateIds.ANY.id)
-                .stream()
-                .filter(f -> f.isForEvent(event))
-                .findFirst()
-                .ifPresent(e -> e.function.execute());
+    /**
+     * Resolve an event of a batch without changing the current state, unless an execution flow must run.
+     * @param row Row reached by the previous events of the batch.
+     * @param event Event value.
+     * @return The row reached after the event.
+     */
+    private int batchStep(final int row, final int event) {
+        TransitionTable t = this.table();
+        int column = t.column(event);
+        if(column == TransitionTable.NONE) {
+            if(this.metrics != null) {
+                this.metrics.unhandled(StateFlowEvent.valueOf(event));
+            }
+            if(this.trace != null) {
+                this.trace.record(t.state(row).value(), event, t.state(row).value());
+            }
+            return row;
+        }
+        int next = t.next(t.cell(row, column));
+        if(this.metrics != null) {
+            this.count(row, column, next, event);
+        }
+        int target = next == TransitionTable.NONE ? row : next;
+        if(this.trace != null) {
+            this.trace.record(t.state(row).value(), event, t.state(target).value());
+        }
+        StateFlowExecutionFunction[] before = t.beforeExecutions(row, column);
+        StateFlowExecutionFunction[] after = t.executions(target, column);
+        if(before == null && after == null) {
+            return target;
+        }
+        if(before != null) {
+            this.moveTo(row, event);
+            this.execute(before, event);
+        }
+        this.moveTo(target, event);
+        if(after != null) {
+            this.execute(after, event);
+        }
+        this.table();
+        return this.currentRow;
     }
 
-    public interface StateBuilder<T extends State> {
-        T build();
+    /**
+     * Record a handled or unhandled event.
+     * @param row Current row.
+     * @param column Event column.
+     * @param next Next row, or NONE.
+     * @param event Event value.
+     */
+    private void count(final int row, final int column, final int next, final int event) {
+        int target = next == TransitionTable.NONE ? row : next;
+        if(next == TransitionTable.NONE && !this.table.hasExecutions(row, target, column)) {
+            this.metrics.unhandled(StateFlowEvent.valueOf(event));
+        } else {
+            this.metrics.transition(row, column);
+        }
+    }
+
+    /**
+     * Move to a state without a precomputed path.
+     * @param row Row of the next state.
+     * @param event Value of the last event leading to the state.
+     */
+    private void moveTo(final int row, final int event) {
+        if(row != this.currentRow) {
+            int from = this.currentRow;
+            if(JfrTransitionEvent.enabled()) {
+                this.recordTransition(row, WALK, event);
+            } else {
+                this.walk(row);
+            }
+            if(this.listeners.length > 0) {
+                this.notifyTransition(from, this.table.column(event), event);
+            }
+        }
+    }
+
+    /**
+     * Move to a state, walking up the parents to find the states to deactivate and activate.
+     * @param row Row of the next state.
+     */
+    private void walk(final int row) {
+        int ancestor = this.table.commonAncestor(this.currentRow, row);
+        if(!this.stateToBuild.isEmpty()) {
+            for (int r = row; r != ancestor; r = this.table.parent(r)) {
+                this.resolve(r);
+            }
+        }
+        if(this.asyncStates && this.startAsync(row, this.chain(this.currentRow, ancestor, false), this.chain(row, ancestor, true))) {
+            this.currentState = this.table.state(row);
+            this.currentRow = row;
+            this.afterTransition();
+            return;
+        }
+        for (int r = this.currentRow; r != ancestor; r = this.table.parent(r)) {
+            this.deactivate(r);
+        }
+        this.enter(row, ancestor);
+        this.currentState = this.table.state(row);
+        this.currentRow = row;
+        this.afterTransition();
+    }
+
+    /**
+     * Provide the rows between a row and one of its ancestors.
+     * @param row Row to start from.
+     * @param ancestor Ancestor row, excluded, or NONE.
+     * @param down True to list the rows from the ancestor down to the row, false for the other order.
+     * @return The rows, the row included.
+     */
+    private int[] chain(final int row, final int ancestor, final boolean down) {
+        int size = 0;
+        for (int r = row; r != ancestor; r = this.table.parent(r)) {
+            size++;
+        }
+        int[] rows = new int[size];
+        int i = down ? size - 1 : 0;
+        for (int r = row; r != ancestor; r = this.table.parent(r)) {
+            rows[i] = r;
+            i += down ? -1 : 1;
+        }
+        return rows;
+    }
+
+    private void enter(final int row, final int ancestor) {
+        if(row != ancestor) {
+            this.enter(this.table.parent(row), ancestor);
+            this.activate(row);
+        }
+    }
+
+    /**
+     * @return True if an asynchronous transition is in progress, events received meanwhile are processed once it is complete.
+     */
+    public final boolean isInTransition() {
+        this.runCompletions();
+        return this.transition != null && !this.transition.isDone();
+    }
+
+    /**
+     * Run the steps of the asynchronous transition whose previous step is complete, on the calling thread.
+     */
+    private void runCompletions() {
+        Runnable step;
+        while ((step = this.completions.poll()) != null) {
+            step.run();
+        }
+    }
+
+    /**
+     * Provide the completion of the current asynchronous transition, the events received during the transition are processed
+     * by the next call to processEvent, processEvents or processPending after its completion.
+     * The steps of the transition run on the thread processing the events, when it calls processEvent, processEvents,
+     * processPending, tick or isInTransition: that thread must not wait for the returned future.
+     * @return A copy of the transition future, completed with the new state id when the transition is complete,
+     * already completed if there is no transition.
+     */
+    public final CompletableFuture<StateId> getTransition() {
+        return this.transition == null ? CompletableFuture.completedFuture(this.currentState) : this.transition.copy();
+    }
+
+    /**
+     * Check if an asynchronous transition is still running, once complete the deferred events are processed.
+     * If the transition failed, the deferred events are discarded and the failure is thrown.
+     * @return True if a transition is still running.
+     */
+    private boolean inTransition() {
+        this.runCompletions();
+        if(!this.transition.isDone()) {
+            return true;
+        }
+        CompletableFuture<StateId> done = this.transition;
+        this.transition = null;
+        if(done.isCompletedExceptionally()) {
+            for (int i = 0; i < this.deferredSize; i++) {
+                JfrDroppedEvent.emit(this.deferred[(this.deferredHead + i) % this.deferred.length], JfrDroppedEvent.TRANSITION_FAILED);
+            }
+            this.deferredSize = 0;
+            done.join();
+        }
+        while (this.transition == null && this.deferredSize > 0) {
+            int event = this.deferred[this.deferredHead];
+            this.deferredHead = (this.deferredHead + 1) % this.deferred.length;
+            this.deferredSize--;
+            this.dispatch(event);
+        }
+        return this.transition != null;
+    }
+
+    /**
+     * Record the events received by processEvent and processEvents, including the ones coming from the event queue,
+     * replaying the log on a manager with the same registrations leads to the same state.
+     * @param log Log to append the events to.
+     */
+    public final void enableEventLog(final EventLog log) {
+        Objects.requireNonNull(log);
+        this.eventLog = log;
+    }
+
+    public final void disableEventLog() {
+        this.eventLog = null;
+    }
+
+    /**
+     * Save the position of this manager: the current state, the events deferred during an asynchronous transition
+     * and the events in the queue. Which lazily registered states are built is not saved, they are built when needed.
+     * Must be called from the thread processing the events.
+     * @return The snapshot, to be restored with restore.
+     */
+    public final byte[] snapshot() {
+        var bytes = new ByteArrayOutputStream();
+        try (var data = new DataOutputStream(bytes)) {
+            data.writeInt(SNAPSHOT_MAGIC);
+            data.writeInt(SNAPSHOT_VERSION);
+            data.writeInt(this.currentState.value());
+            data.writeInt(this.deferredSize);
+            for (int i = 0; i < this.deferredSize; i++) {
+                data.writeInt(this.deferred[(this.deferredHead + i) % this.deferred.length]);
+            }
+            int[] queued = this.queue == null ? new int[0] : this.queue.peek();
+            data.writeInt(queued.length);
+            for (int event : queued) {
+                data.writeInt(event);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Move to the position saved in a snapshot, taken from this manager or from another one with the same registrations.
+     * Only the current state and the restored state with their parents are deactivated and activated.
+     * The deferred events are processed on the next call to processEvent, processEvents or processPending,
+     * the queued events are added to the event queue.
+     * @param snapshot Snapshot created with snapshot.
+     * @throws IllegalArgumentException If the snapshot is invalid or references a state not registered in this manager.
+     * @throws IllegalStateException If an asynchronous transition is in progress, or if the snapshot contains queued events
+     * and the event queue is not enabled.
+     */
+    public final void restore(final byte[] snapshot) {
+        Objects.requireNonNull(snapshot);
+        if(this.isInTransition()) {
+            throw new IllegalStateException("Transition in progress.");
+        }
+        StateId state;
+        int[] deferredEvents;
+        int[] queued;
+        try (var data = new DataInputStream(new ByteArrayInputStream(snapshot))) {
+            if(data.readInt() != SNAPSHOT_MAGIC || data.readInt() != SNAPSHOT_VERSION) {
+                throw new IllegalArgumentException("Invalid snapshot.");
+            }
+            state = this.registered(data.readInt());
+            deferredEvents = readEvents(data);
+            queued = readEvents(data);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid snapshot.", e);
+        }
+        if(queued.length > 0 && this.queue == null) {
+            throw new IllegalStateException("Event queue not enabled.");
+        }
+        this.transition = null;
+        if(!state.equals(this.currentState)) {
+            int row = this.table().row(state);
+            if(row == TransitionTable.NONE) {
+                throw new IllegalArgumentException("No flow involving state " + state.value());
+            }
+            if(this.currentRow == TransitionTable.NONE) {
+                this.getCurrentState().deactivate();
+                this.enter(row, TransitionTable.NONE);
+                this.currentState = state;
+                this.currentRow = row;
+                this.afterTransition();
+            } else {
+                this.walk(row);
+            }
+        }
+        this.deferredSize = 0;
+        for (int event : deferredEvents) {
+            this.defer(event);
+        }
+        if(this.deferredSize > 0 && this.transition == null) {
+            this.transition = CompletableFuture.completedFuture(state);
+        }
+        for (int event : queued) {
+            this.postEvent(event);
+        }
+    }
+
+    /**
+     * @param value State value read from a snapshot.
+     * @return The state id.
+     * @throws IllegalArgumentException If the state is not registered.
+     */
+    private StateId registered(final int value) {
+        StateId id = StateId.valueOf(value);
+        if(!this.states.containsKey(id) && !this.stateToBuild.containsKey(id)) {
+            throw new IllegalArgumentException("No state associated with " + value);
+        }
+        return id;
+    }
+
+    private static int[] readEvents(final DataInputStream data) throws IOException {
+        int size = data.readInt();
+        if(size < 0 || size > data.available() / Integer.BYTES) {
+            throw new IOException("Invalid size: " + size);
+        }
+        int[] events = new int[size];
+        for (int i = 0; i < size; i++) {
+            events[i] = data.readInt();
+        }
+        return events;
+    }
+
+    private void defer(final int event) {
+        if(this.deferredSize == this.deferred.length) {
+            int[] grown = new int[Math.max(16, this.deferred.length * 2)];
+            for (int i = 0; i < this.deferredSize; i++) {
+                grown[i] = this.deferred[(this.deferredHead + i) % this.deferred.length];
+            }
+            this.deferred = grown;
+            this.deferredHead = 0;
+        }
+        this.deferred[(this.deferredHead + this.deferredSize) % this.deferred.length] = event;
+        this.deferredSize++;
+    }
+
+    /**
+     * Enable the event queue, events can then be posted from any thread with postEvent,
+     * they are processed in the thread calling processPending or drain.
+     * @param capacity Number of events the queue can hold.
+     * @param policy What to do when an event is posted and the queue is full.
+     */
+    public final void enableEventQueue(final int capacity, final EventQueuePolicy policy) {
+        this.queue = new StateFlowEventQueue(capacity, policy);
+    }
+
+    /**
+     * Define how the queued occurrences of an event are merged, all the events of a processPending or drain call are
+     * coalesced before being processed.
+     * @param event Event to coalesce.
+     * @param policy Policy to apply, NONE by default.
+     */
+    public final void setCoalescingPolicy(final StateFlowEvent event, final CoalescingPolicy policy) {
+        Objects.requireNonNull(event);
+        Objects.requireNonNull(policy);
+        if(this.coalescing == null) {
+            this.coalescing = new CoalescingPolicy[0];
+        }
+        if(event.ordinal() >= this.coalescing.length) {
+            int size = event.ordinal() + 1;
+            this.coalescing = Arrays.copyOf(this.coalescing, size);
+            this.seen = Arrays.copyOf(this.seen == null ? new int[0] : this.seen, size);
+        }
+        this.coalescing[event.ordinal()] = policy;
+    }
+
+    public final void setCoalescingPolicy(final StateFlowEvents event, final CoalescingPolicy policy) {
+        this.setCoalescingPolicy(event.event, policy);
+    }
+
+    private CoalescingPolicy coalescingPolicy(final int event) {
+        int ordinal = StateFlowEvent.findOrdinal(event);
+        CoalescingPolicy policy = ordinal >= 0 && ordinal < this.coalescing.length ? this.coalescing[ordinal] : null;
+        return policy == null ? CoalescingPolicy.NONE : policy;
+    }
+
+    /**
+     * Drain all the events of a frame, coalesce and process them.
+     * @param q Event queue.
+     * @param max Maximum number of events to drain.
+     * @return The number of drained events.
+     */
+    private int processFrame(final StateFlowEventQueue q, final int max) {
+        int count = 0;
+        while (count < max) {
+            if(count == this.pending.length) {
+                this.pending = Arrays.copyOf(this.pending, count * 2);
+            }
+            int drained = q.drainTo(this.pending, count, Math.min(max - count, this.pending.length - count));
+            if(drained == 0) {
+                break;
+            }
+            count += drained;
+        }
+        int kept = this.coalesce(count);
+        for (int i = 0; i < kept; i++) {
+            this.process(this.pending[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Apply the coalescing policies to the pending events, the kept events are moved to the beginning of the array.
+     * @param length Number of pending events.
+     * @return The number of kept events.
+     */
+    private int coalesce(final int length) {
+        if(this.dropped.length < length) {
+            this.dropped = new boolean[this.pending.length];
+        }
+        Arrays.fill(this.dropped, 0, length, false);
+        this.frame++;
+        for (int i = 0; i < length; i++) {
+            if(this.coalescingPolicy(this.pending[i]) == CoalescingPolicy.DROP_DUPLICATES) {
+                this.dropped[i] = this.markSeen(this.pending[i]);
+            }
+        }
+        this.frame++;
+        for (int i = length - 1; i >= 0; i--) {
+            if(this.coalescingPolicy(this.pending[i]) == CoalescingPolicy.KEEP_LAST) {
+                this.dropped[i] = this.markSeen(this.pending[i]);
+            }
+        }
+        TransitionTable t = this.table();
+        int row = this.currentRow;
+        int kept = 0;
+        for (int i = 0; i < length; i++) {
+            int event = this.pending[i];
+            if(this.dropped[i]) {
+                JfrDroppedEvent.emit(event, JfrDroppedEvent.COALESCED);
+                continue;
+            }
+            int next = this.simulate(t, row, event);
+            int after = this.nextKept(i + 1, length);
+            if(next != row && next != TransitionTable.NONE && after != -1
+                    && this.coalescingPolicy(event) == CoalescingPolicy.COLLAPSE_ROUND_TRIP
+                    && this.simulate(t, next, this.pending[after]) == row) {
+                this.dropped[after] = true;
+                JfrDroppedEvent.emit(event, JfrDroppedEvent.COALESCED);
+                continue;
+            }
+            this.pending[kept++] = event;
+            row = next;
+        }
+        return kept;
+    }
+
+    /**
+     * @param event Event value.
+     * @return True if the event was already seen in the current frame.
+     */
+    private boolean markSeen(final int event) {
+        int ordinal = StateFlowEvent.findOrdinal(event);
+        boolean duplicate = this.seen[ordinal] == this.frame;
+        this.seen[ordinal] = this.frame;
+        return duplicate;
+    }
+
+    private int nextKept(final int from, final int length) {
+        for (int i = from; i < length; i++) {
+            if(!this.dropped[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Predict the row reached after an event, without any side effect.
+     * @param t Transition table.
+     * @param row Current row, or NONE if it cannot be predicted.
+     * @param event Event value.
+     * @return The row after the event, or NONE if it cannot be predicted because a guard decides it or an execution flow runs.
+     */
+    private int simulate(final TransitionTable t, final int row, final int event) {
+        int column = t.column(event);
+        if(row == TransitionTable.NONE || column == TransitionTable.NONE) {
+            return row;
+        }
+        if(t.isGuarded(row, column)) {
+            return TransitionTable.NONE;
+        }
+        int next = t.next(t.cell(row, column));
+        int target = next == TransitionTable.NONE ? row : next;
+        return t.hasExecutions(row, target, column) ? TransitionTable.NONE : target;
+    }
+
+    /**
+     * Post an event to be processed later by processPending or drain, this method is thread safe and lock-free,
+     * except when the queue is full with the BLOCK policy.
+     * @param event Event to post.
+     * @return True if the event was queued, false if it was dropped.
+     * @throws IllegalStateException If the event queue is not enabled.
+     */
+    public final boolean postEvent(final StateFlowEvent event) {
+        return this.postEvent(event.value());
+    }
+
+    public final boolean postEvent(final StateFlowEvents event) {
+        return this.postEvent(event.event.value());
+    }
+
+    public final boolean postEvent(final int event) {
+        StateFlowEventQueue q = this.queue;
+        if(q == null) {
+            throw new IllegalStateException("Event queue not enabled.");
+        }
+        boolean queued = q.offer(event);
+        if(!queued) {
+            JfrDroppedEvent.emit(event, JfrDroppedEvent.QUEUE_FULL);
+        }
+        return queued;
+    }
+
+    /**
+     * Process the events posted with postEvent, in the order they were posted.
+     * Must be called from the thread processing the events, usually once per frame.
+     * @param max Maximum number of events to process.
+     * @return The number of processed events.
+     */
+    public final int processPending(final int max) {
+        if(this.transition != null) {
+            this.inTransition();
+        }
+        StateFlowEventQueue q = this.queue;
+        if(q == null) {
+            return 0;
+        }
+        if(this.coalescing != null) {
+            return this.processFrame(q, max);
+        }
+        int processed = 0;
+        while (processed < max) {
+            int count = q.drainTo(this.pending, 0, Math.min(max - processed, PENDING_BATCH));
+            if(count == 0) {
+                break;
+            }
+            for (int i = 0; i < count; i++) {
+                this.process(this.pending[i]);
+            }
+            processed += count;
+        }
+        return processed;
+    }
+
+    /**
+     * Process all the events posted with postEvent.
+     * @return The number of processed events.
+     */
+    public final int drain() {
+        return this.processPending(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Make a state the child of another one, the events not handled by the child are handled by the parent,
+     * the parent is activated before entering the child from outside of the parent, and deactivated after leaving it.
+     * A transition between the children of a same parent keeps the parent active.
+     * The parents of the initial state are activated when the flows are compiled, before the first event is processed.
+     * @param state Child state.
+     * @param parent Parent state.
+     * @throws IllegalArgumentException If one of the states is not registered or if it would create a cycle.
+     */
+    public final void registerParentState(final StateId state, final StateId parent) {
+        Objects.requireNonNull(state);
+        Objects.requireNonNull(parent);
+        if(!this.flows.containsKey(state) || !this.flows.containsKey(parent)) {
+            throw new IllegalArgumentException("States must be registered before defining their hierarchy.");
+        }
+        for (StateId p = parent; p != null; p = this.parents.get(p)) {
+            if(p.equals(state)) {
+                throw new IllegalArgumentException("Cycle in the state hierarchy for " + state.value());
+            }
+        }
+        this.parents.put(state, parent);
+        this.table = null;
+    }
+
+    /**
+     * Register a transition, must be called from the thread processing the events.
+     * @param flow Transition to register.
+     */
+    public final void registerGameStateFlow(final StateFlow flow) {
+        Objects.requireNonNull(flow);
+        if(flow.group != null) {
+            this.groupFlows.add(flow);
+        } else {
+            this.flows.get(flow.state).add(flow);
+        }
+        this.table = null;
+    }
+
+    /**
+     * Register an execution flow, must be called from the thread processing the events.
+     * Every execution flow matching a state and an event is run, in registration order.
+     * @param flow Execution flow to register.
+     */
+    public final void registerGameStateFlow(final StateFlowExecution flow) {
+        Objects.requireNonNull(flow);
+        if(flow.group != null) {
+            this.groupExecutionFlows.add(flow);
+        } else {
+            this.executionFlows.get(flow.state).add(flow);
+        }
+        this.table = null;
+    }
+
+    /**
+     * Check the registered flows: states not reachable from the current state, flows that can never be applied,
+     * flows to states not registered, states without exit, and flows overriding a StateIds.ANY flow.
+     * @return The analysis report, also providing the distances between states.
+     */
+    public final FlowGraphReport validate() {
+        var registered = new HashSet<>(this.states.keySet());
+        registered.addAll(this.stateToBuild.keySet());
+        return FlowGraphReport.analyze(this.table(), this.flows, this.groupFlows, registered, this.currentState);
+    }
+
+    /**
+     * Advance the timers of the timed flows, a StateFlowEvents.TIMEOUT event is processed when the current state timer expires.
+     * The timer of a state is armed when the state is entered, or at the first tick for the initial state, and cancelled when it is left.
+     * @param elapsedNanos Time elapsed since the previous tick.
+     */
+    public final void tick(final long elapsedNanos) {
+        if(this.transition != null) {
+            this.inTransition();
+        }
+        this.table();
+        this.armTimer();
+        if(this.timers != null) {
+            this.timers.advance(elapsedNanos);
+        }
+    }
+
+    /**
+     * Arm the timer of the current state if it was not armed since the state was entered, the timer of a left state is cancelled.
+     */
+    private void armTimer() {
+        if(this.currentState.equals(this.timerState)) {
+            return;
+        }
+        this.timerState = this.currentState;
+        if(this.timers == null) {
+            if(this.table.timeout(this.currentRow) < 0) {
+                return;
+            }
+            this.timers = new Timers();
+        }
+        this.timers.reset(0);
+    }
+
+    /**
+     * Freeze the registered flows into a transition table, this is done on the first event after a registration,
+     * call it after the registrations to avoid paying the compilation cost during the event processing.
+     */
+    public final void compile() {
+        this.table();
+    }
+
+    private TransitionTable table() {
+        if(this.table == null) {
+            this.table = TransitionTable.compile(this.flows, this.executionFlows, this.groupFlows, this.groupExecutionFlows, this.parents);
+            this.currentRow = this.table.row(this.currentState);
+            if(this.metrics != null) {
+                this.metrics.bind(this.table);
+            }
+            if(this.initialParents != null) {
+                this.activateInitialParents();
+            }
+        }
+        return this.table;
+    }
+
+    /**
+     * Activate the parents of the initial state not yet activated, from the outermost one, as the hierarchy is only known once compiled.
+     */
+    private void activateInitialParents() {
+        if(this.currentRow == TransitionTable.NONE) {
+            return;
+        }
+        var chain = new ArrayList<Integer>();
+        for (int r = this.table.parent(this.currentRow); r != TransitionTable.NONE; r = this.table.parent(r)) {
+            chain.add(r);
+        }
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            if(this.initialParents.add(this.table.state(chain.get(i)))) {
+                this.activate(chain.get(i));
+            }
+        }
+    }
+
+    public final T getCurrentState() {
+        return this.states.get(this.currentState);
+    }
+
+    /**
+     * Change the current state.
+     * @param row Row of the next state.
+     * @param path Precomputed path of the transition, or NONE to only deactivate the current state and activate the next one.
+     */
+    private void setCurrentState(final int row, final int path) {
+        if(!this.stateToBuild.isEmpty()) {
+            this.resolveEntries(row, path);
+        }
+        if(this.asyncStates && this.startAsync(row, path == TransitionTable.NONE ? new int[]{this.currentRow} : this.table.exits(path),
+                path == TransitionTable.NONE ? new int[]{row} : this.table.entries(path))) {
+            this.currentState = this.table.state(row);
+            this.currentRow = row;
+            this.afterTransition();
+            return;
+        }
+        if(path == TransitionTable.NONE) {
+            this.deactivate(this.currentRow);
+            this.activate(row);
+        } else {
+            for (int r : this.table.exits(path)) {
+                this.deactivate(r);
+            }
+            for (int r : this.table.entries(path)) {
+                this.activate(r);
+            }
+        }
+        this.currentState = this.table.state(row);
+        this.currentRow = row;
+        this.afterTransition();
+    }
+
+    /**
+     * Build the lazily registered states to activate before the transition starts, so an AsyncState built on the way
+     * is activated asynchronously.
+     * @param row Row of the next state.
+     * @param path Precomputed path of the transition, or NONE.
+     */
+    private void resolveEntries(final int row, final int path) {
+        if(path == TransitionTable.NONE) {
+            this.resolve(row);
+        } else {
+            for (int r : this.table.entries(path)) {
+                this.resolve(r);
+            }
+        }
+    }
+
+    /**
+     * Start an asynchronous transition if one of the involved states is an AsyncState.
+     * The deactivations then the activations are chained, the deactivations run alongside the activations
+     * if the next state allows it.
+     * @param row Row of the next state.
+     * @param exits Rows to deactivate, in order.
+     * @param entries Rows to activate, in order.
+     * @return True if the transition is asynchronous, false if nothing was activated or deactivated.
+     */
+    private boolean startAsync(final int row, final int[] exits, final int[] entries) {
+        boolean async = false;
+        for (int r : exits) {
+            async |= this.states.get(this.table.state(r)) instanceof AsyncState;
+        }
+        for (int r : entries) {
+            async |= this.resolve(r) instanceof AsyncState;
+        }
+        if(!async) {
+            return false;
+        }
+        CompletableFuture<Void> exit = CompletableFuture.completedFuture(null);
+        for (int r : exits) {
+            T state = this.states.get(this.table.state(r));
+            exit = exit.thenComposeAsync(v -> this.timed(() -> deactivate(state), this.metrics == null ? null : this.metrics.getDeactivateHistogram()),
+                    this.managerThread);
+            this.deactivated(this.table.state(r));
+        }
+        boolean overlap = this.states.get(this.table.state(row)) instanceof AsyncState a && a.canOverlap();
+        CompletableFuture<Void> entry = overlap ? CompletableFuture.completedFuture(null) : exit;
+        for (int r : entries) {
+            T state = this.states.get(this.table.state(r));
+            entry = entry.thenComposeAsync(v -> this.timed(() -> activate(state), this.metrics == null ? null : this.metrics.getActivateHistogram()),
+                    this.managerThread);
+        }
+        StateId id = this.table.state(row);
+        this.transition = (overlap ? CompletableFuture.allOf(exit, entry) : entry).thenApplyAsync(v -> id, this.managerThread);
+        this.runCompletions();
+        return true;
+    }
+
+    /**
+     * Run an asynchronous callback, recording its duration until completion.
+     * @param callback Callback to run.
+     * @param histogram Histogram to record the duration, or null.
+     * @return The callback completion.
+     */
+    private CompletionStage<Void> timed(final Supplier<CompletionStage<Void>> callback, final LatencyHistogram histogram) {
+        if(histogram == null) {
+            return callback.get();
+        }
+        long start = System.nanoTime();
+        return callback.get().whenCompleteAsync((v, e) -> histogram.record(System.nanoTime() - start), this.managerThread);
+    }
+
+    private static CompletionStage<Void> activate(final State state) {
+        if(state instanceof AsyncState a) {
+            return a.activateAsync();
+        }
+        state.activate();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static CompletionStage<Void> deactivate(final State state) {
+        if(state instanceof AsyncState a) {
+            return a.deactivateAsync();
+        }
+        state.deactivate();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void deactivate(final int row) {
+        if(this.metrics == null) {
+            this.states.get(this.table.state(row)).deactivate();
+        } else {
+            long start = System.nanoTime();
+            this.states.get(this.table.state(row)).deactivate();
+            this.metrics.getDeactivateHistogram().record(System.nanoTime() - start);
+        }
+        this.deactivated(this.table.state(row));
+    }
+
+    private void activate(final int row) {
+        T state = this.resolve(row);
+        if(this.metrics == null) {
+            state.activate();
+        } else {
+            long start = System.nanoTime();
+            state.activate();
+            this.metrics.getActivateHistogram().record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Provide the state of a row, building it if it was registered with a builder.
+     * @param row State row.
+     * @return The state.
+     * @throws IllegalArgumentException If no state is registered for the row.
+     */
+    private T resolve(final int row) {
+        StateId id = this.table.state(row);
+        if(!this.states.containsKey(id)) {
+            if(this.stateToBuild.containsKey(id)) {
+                this.registerGameState(this.build(id, this.stateToBuild.remove(id)));
+            } else {
+                throw new IllegalArgumentException("No state associated with " + id.value());
+            }
+        }
+        this.activated(id);
+        return this.states.get(id);
+    }
+
+    private T build(final StateId id, final StateBuilder<T> builder) {
+        JfrStateBuildEvent e = null;
+        if(JfrStateBuildEvent.enabled()) {
+            e = new JfrStateBuildEvent();
+            e.state = id.value();
+            e.begin();
+        }
+        long start = this.metrics == null ? 0 : System.nanoTime();
+        T built = this.prebuilder == null ? null : this.prebuilder.take(id);
+        if(built == null) {
+            built = builder.build();
+        }
+        if(this.metrics != null) {
+            this.metrics.getBuildHistogram().record(System.nanoTime() - start);
+        }
+        if(e != null) {
+            e.commit();
+        }
+        return built;
+    }
+
+    public interface StateBuilder<T extends State> {
+        T build();
+    }
+
+    /**
+     * Registered transition listener with its filters.
+     * @param listener Listener to notify.
+     * @param states Bit set of the state ordinals to notify, null for all.
+     * @param events Bit set of the event ordinals to notify, null for all.
+     */
+    private record Listener(TransitionListener listener, long[] states, long[] events) {
+
+        private static boolean contains(final long[] mask, final int ordinal) {
+            int word = ordinal / Long.SIZE;
+            return ordinal >= 0 && word < mask.length && (mask[word] & 1L << ordinal) != 0;
+        }
+    }
+
+    /**
+     * Timer of the current state, its single owner is the manager.
+     */
+    private final class Timers extends StateTimers {
+
+        private Timers() {
+            super(1);
+        }
+
+        @Override
+        boolean timeout(final int owner, final long elapsed) {
+            StateId state = StateManager.this.currentState;
+            StateManager.this.processTimeout(elapsed);
+            return !state.equals(StateManager.this.currentState);
+        }
+
+        @Override
+        long delay(final int owner) {
+            return StateManager.this.table().timeout(StateManager.this.currentRow);
+        }
+
+        @Override
+        long nextDelay(final int owner, final long elapsed) {
+            return StateManager.this.table().nextTimeout(StateManager.this.currentRow, elapsed);
+        }
     }
 }
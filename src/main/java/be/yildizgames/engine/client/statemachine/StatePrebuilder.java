@@ -0,0 +1,147 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Build the lazily registered states in background, states reachable in one hop from the current state first.
+ * Every scheduled state submits one task, the task builds the state with the highest priority at the time it runs,
+ * not necessarily the one that submitted it.
+ * @author Grégory Van den Borre
+ */
+final class StatePrebuilder<T extends State> {
+
+    private final Executor executor;
+
+    /**
+     * Result of every scheduled build, guarded by this.
+     */
+    private final Map<StateId, CompletableFuture<T>> builds = new HashMap<>();
+
+    /**
+     * Builders not yet picked by a task, guarded by this.
+     */
+    private final Map<StateId, StateManager.StateBuilder<T>> pending = new LinkedHashMap<>();
+
+    /**
+     * Table providing the states of the priority rows, guarded by this.
+     */
+    private TransitionTable table;
+
+    /**
+     * Rows of the states to build first, shared with the table and never modified, guarded by this.
+     */
+    private int[] priority = new int[0];
+
+    StatePrebuilder(Executor executor) {
+        super();
+        this.executor = executor;
+    }
+
+    void schedule(StateId id, StateManager.StateBuilder<T> builder) {
+        synchronized (this) {
+            if (this.builds.containsKey(id)) {
+                return;
+            }
+            this.builds.put(id, new CompletableFuture<>());
+            this.pending.put(id, builder);
+        }
+        this.executor.execute(this::buildNext);
+    }
+
+    /**
+     * Give priority to the states of some rows, the states not scheduled are ignored.
+     * @param table Table providing the state of each row.
+     * @param rows Rows to build first, the array is kept and must not be modified.
+     */
+    synchronized void prioritize(TransitionTable table, int[] rows) {
+        this.table = table;
+        this.priority = rows;
+    }
+
+    /**
+     * Retrieve a state, waiting for its build if it is running, or building it in the calling thread if it did not start yet.
+     * @param id State id.
+     * @return The built state, or null if it was not scheduled.
+     */
+    T take(StateId id) {
+        CompletableFuture<T> build;
+        StateManager.StateBuilder<T> builder;
+        synchronized (this) {
+            build = this.builds.remove(id);
+            builder = this.pending.remove(id);
+        }
+        if (build == null) {
+            return null;
+        }
+        if (builder != null) {
+            return builder.build();
+        }
+        try {
+            return build.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException r) {
+                throw r;
+            }
+            throw e;
+        }
+    }
+
+    private void buildNext() {
+        StateId id;
+        StateManager.StateBuilder<T> builder;
+        CompletableFuture<T> build;
+        synchronized (this) {
+            id = this.pick();
+            if (id == null) {
+                return;
+            }
+            builder = this.pending.remove(id);
+            build = this.builds.get(id);
+        }
+        try {
+            build.complete(builder.build());
+        } catch (RuntimeException e) {
+            build.completeExceptionally(e);
+        }
+    }
+
+    private StateId pick() {
+        for (int row : this.priority) {
+            StateId id = this.table.state(row);
+            if (this.pending.containsKey(id)) {
+                return id;
+            }
+        }
+        return this.pending.isEmpty() ? null : this.pending.keySet().iterator().next();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Timers of the timed flows for a set of machines sharing a timer wheel, each machine is identified by an owner index.
+ * The timer of an owner is armed with the delay of its current state, when it expires a StateFlowEvents.TIMEOUT event is processed
+ * with the time spent in the state: if the state did not change, the timer is armed again for the next timed flow to wait for,
+ * the timed flows rejected by their guard do not fire the longer ones early.
+ * Not thread safe.
+ * @author Grégory Van den Borre
+ */
+abstract class StateTimers {
+
+    /**
+     * Number of slots of the timer wheel, a turn of the wheel lasts about half a second.
+     */
+    static final int SLOTS = 512;
+
+    /**
+     * Duration of a timer wheel tick in nanoseconds.
+     */
+    static final long RESOLUTION = 1_000_000L;
+
+    private final TimerWheel wheel = new TimerWheel(SLOTS, RESOLUTION);
+
+    /**
+     * Timer of each owner, NONE if it is not armed.
+     */
+    private final int[] ids;
+
+    /**
+     * Time the owner will have spent in its state when its timer expires, in nanoseconds.
+     */
+    private final long[] deadlines;
+
+    private final IntConsumer expiration = this::expire;
+
+    /**
+     * @param owners Number of owners.
+     */
+    StateTimers(int owners) {
+        super();
+        this.ids = new int[owners];
+        this.deadlines = new long[owners];
+        Arrays.fill(this.ids, TimerWheel.NONE);
+    }
+
+    /**
+     * Process a StateFlowEvents.TIMEOUT event for an owner.
+     * @param owner Owner whose timer expired.
+     * @param elapsed Time spent in the current state in nanoseconds.
+     * @return True if the owner state changed.
+     */
+    abstract boolean timeout(int owner, long elapsed);
+
+    /**
+     * @param owner Owner index.
+     * @return The delay of the timed flows leaving the current state of the owner in nanoseconds, negative if there is none.
+     */
+    abstract long delay(int owner);
+
+    /**
+     * @param owner Owner index.
+     * @param elapsed Time spent in the current state in nanoseconds.
+     * @return The delay of the next timed flow to wait for in the current state of the owner, negative if there is none.
+     */
+    abstract long nextDelay(int owner, long elapsed);
+
+    /**
+     * Cancel the timer of an owner and arm the one of its current state.
+     * @param owner Owner index.
+     */
+    final void reset(int owner) {
+        if (this.ids[owner] != TimerWheel.NONE) {
+            this.wheel.cancel(this.ids[owner]);
+            this.ids[owner] = TimerWheel.NONE;
+        }
+        long delay = this.delay(owner);
+        if (delay >= 0) {
+            this.ids[owner] = this.wheel.arm(owner, delay);
+            this.deadlines[owner] = delay;
+        }
+    }
+
+    /**
+     * Move the timers forward, the expired ones process their timeout.
+     * @param elapsed Elapsed time in nanoseconds.
+     */
+    final void advance(long elapsed) {
+        this.wheel.advance(elapsed, this.expiration);
+    }
+
+    /**
+     * @return The number of armed timers.
+     */
+    final int size() {
+        return this.wheel.size();
+    }
+
+    private void expire(int owner) {
+        this.ids[owner] = TimerWheel.NONE;
+        long deadline = this.deadlines[owner];
+        boolean changed = this.timeout(owner, deadline);
+        if (this.ids[owner] != TimerWheel.NONE) {
+            return;
+        }
+        if (changed) {
+            this.reset(owner);
+        } else {
+            long next = this.nextDelay(owner, deadline);
+            if (next >= 0) {
+                this.ids[owner] = this.wheel.arm(owner, next - deadline);
+                this.deadlines[owner] = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Hashed timer wheel, timers are stored in int arrays as doubly linked lists, one list per slot.
+ * Arming and cancelling a timer are constant time, advancing the wheel visits a single slot per tick.
+ * The wheel is not thread safe.
+ * @author Grégory Van den Borre
+ */
+final class TimerWheel {
+
+    /**
+     * Value for no timer.
+     */
+    static final int NONE = -1;
+
+    /**
+     * Duration of a tick in nanoseconds.
+     */
+    private final long resolution;
+
+    private final int mask;
+
+    /**
+     * First timer of each slot.
+     */
+    private final int[] heads;
+
+    /**
+     * Tick when each timer expires.
+     */
+    private long[] deadlines;
+
+    /**
+     * Value given back when each timer expires.
+     */
+    private int[] owners;
+
+    private int[] next;
+
+    private int[] previous;
+
+    /**
+     * First released timer, released timers are chained with next.
+     */
+    private int free = NONE;
+
+    /**
+     * Number of timers ever allocated.
+     */
+    private int allocated;
+
+    private int size;
+
+    private long tick;
+
+    /**
+     * Elapsed nanoseconds not yet converted to a tick.
+     */
+    private long remainder;
+
+    /**
+     * Owners of the timers expired during the current tick.
+     */
+    private int[] expired = new int[16];
+
+    /**
+     * @param slots Number of slots, rounded up to a power of two.
+     * @param resolution Duration of a tick in nanoseconds.
+     */
+    TimerWheel(int slots, long resolution) {
+        super();
+        if (slots <= 0 || resolution <= 0) {
+            throw new IllegalArgumentException("Invalid wheel: " + slots + " slots of " + resolution + "ns");
+        }
+        int length = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.resolution = resolution;
+        this.mask = length - 1;
+        this.heads = new int[length];
+        Arrays.fill(this.heads, NONE);
+        this.deadlines = new long[16];
+        this.owners = new int[16];
+        this.next = new int[16];
+        this.previous = new int[16];
+    }
+
+    /**
+     * Start a timer, a delay shorter than a tick expires at the next tick.
+     * @param owner Value given back when the timer expires.
+     * @param delay Delay before expiration in nanoseconds.
+     * @return The timer id, to cancel it.
+     */
+    int arm(int owner, long delay) {
+        int timer = this.allocate();
+        long ticks = Math.max(1, (delay + this.remainder + this.resolution - 1) / this.resolution);
+        this.deadlines[timer] = this.tick + ticks;
+        this.owners[timer] = owner;
+        int slot = (int) (this.deadlines[timer] & this.mask);
+        int head = this.heads[slot];
+        this.previous[timer] = NONE;
+        this.next[timer] = head;
+        if (head != NONE) {
+            this.previous[head] = timer;
+        }
+        this.heads[slot] = timer;
+        this.size++;
+        return timer;
+    }
+
+    /**
+     * Stop a timer before it expires.
+     * @param timer Id returned by arm, the timer must not be expired or already cancelled.
+     */
+    void cancel(int timer) {
+        this.unlink(timer);
+        this.release(timer);
+    }
+
+    /**
+     * Move the wheel forward and give the owner of every expired timer to a consumer, the consumer can arm and cancel timers.
+     * @param elapsed Elapsed time in nanoseconds.
+     * @param expiration Consumer receiving the owners.
+     */
+    void advance(long elapsed, IntConsumer expiration) {
+        this.remainder += elapsed;
+        long ticks = this.remainder / this.resolution;
+        this.remainder -= ticks * this.resolution;
+        long target = this.tick + ticks;
+        if (ticks > this.heads.length) {
+            // Every slot is visited in the last turn, expiring timers from the skipped turns too.
+            this.tick = target - this.heads.length;
+        }
+        while (this.tick < target) {
+            this.tick++;
+            int count = 0;
+            int timer = this.heads[(int) (this.tick & this.mask)];
+            while (timer != NONE) {
+                int following = this.next[timer];
+                if (this.deadlines[timer] <= this.tick) {
+                    if (count == this.expired.length) {
+                        this.expired = Arrays.copyOf(this.expired, count * 2);
+                    }
+                    this.expired[count++] = this.owners[timer];
+                    this.unlink(timer);
+                    this.release(timer);
+                }
+                timer = following;
+            }
+            for (int i = 0; i < count; i++) {
+                expiration.accept(this.expired[i]);
+            }
+        }
+    }
+
+    /**
+     * @return The number of armed timers.
+     */
+    int size() {
+        return this.size;
+    }
+
+    private int allocate() {
+        if (this.free != NONE) {
+            int timer = this.free;
+            this.free = this.next[timer];
+            return timer;
+        }
+        if (this.allocated == this.owners.length) {
+            int length = this.allocated * 2;
+            this.deadlines = Arrays.copyOf(this.deadlines, length);
+            this.owners = Arrays.copyOf(this.owners, length);
+            this.next = Arrays.copyOf(this.next, length);
+            this.previous = Arrays.copyOf(this.previous, length);
+        }
+        return this.allocated++;
+    }
+
+    private void unlink(int timer) {
+        int before = this.previous[timer];
+        int after = this.next[timer];
+        if (before == NONE) {
+            this.heads[(int) (this.deadlines[timer] & this.mask)] = after;
+        } else {
+            this.next[before] = after;
+        }
+        if (after != NONE) {
+            this.previous[after] = before;
+        }
+        this.size--;
+    }
+
+    private void release(int timer) {
+        this.next[timer] = this.free;
+        this.free = timer;
+    }
+}
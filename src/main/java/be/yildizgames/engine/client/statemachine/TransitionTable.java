@@ -0,0 +1,736 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+/**
+ * Frozen form of the registered flows, every state is a row and every event is a column.
+ * The flows of the parent states and the StateIds.ANY flows are already folded in every row, so a dispatch is a couple of array loads.
+ * When a transition involves a child state, the states to deactivate and activate are precomputed as a path.
+ * A cell with guarded flows references a chain of candidate cells stored after the regular ones, evaluated in registration order,
+ * cells without guard are resolved without any extra cost.
+ * @author Grégory Van den Borre
+ */
+final class TransitionTable {
+
+    /**
+     * Value returned when there is no row, column or transition.
+     */
+    static final int NONE = -1;
+
+    /**
+     * State id for each row.
+     */
+    private final StateId[] states;
+
+    /**
+     * Event for each column.
+     */
+    private final StateFlowEvent[] events;
+
+    /**
+     * Row for each state ordinal, or NONE.
+     */
+    private final int[] rows;
+
+    /**
+     * Column for each event ordinal, or NONE.
+     */
+    private final int[] columns;
+
+    /**
+     * Ordinal of the state of each row.
+     */
+    private final int[] stateOrdinals;
+
+    /**
+     * Ordinal of the event of each column.
+     */
+    private final int[] eventOrdinals;
+
+    private final int columnCount;
+
+    /**
+     * Next row for each row x column cell, or NONE, followed by the next row of each guarded candidate.
+     * A regular cell with guarded flows contains the encoded index of its first candidate, see chain.
+     * Null for a loaded table, whose transitions are read from the mapped file.
+     */
+    private int[] transitions;
+
+    /**
+     * Next row for each row x column cell of a loaded table, backed by a memory mapped file, null for a compiled table.
+     */
+    private IntBuffer mapped;
+
+    /**
+     * Functions to execute after the state change for each row x column cell, or null, the array is null if the table has no such flow.
+     */
+    private StateFlowExecutionFunction[][] executions;
+
+    /**
+     * Functions to execute before the state change for each row x column cell, or null, the array is null if the table has no such flow.
+     */
+    private StateFlowExecutionFunction[][] beforeExecutions;
+
+    /**
+     * Parent row for each row, or NONE.
+     */
+    private final int[] parents;
+
+    /**
+     * Number of ancestors for each row.
+     */
+    private final int[] depths;
+
+    /**
+     * Path for each row x column cell and each guarded candidate, or NONE if the transition is between two states without parent,
+     * the array is null if no state has a parent.
+     */
+    private int[] paths;
+
+    /**
+     * Delay of the timed flow of each row in nanoseconds, negative if the row has none, null if the table has no timed flow.
+     */
+    private long[] timeouts;
+
+    /**
+     * Guard of each candidate, a null guard ends the chain, unless the candidate is a timed flow: a chain with timed flows always
+     * ends with a candidate without transition, guard nor delay.
+     */
+    private IntPredicate[] guards = new IntPredicate[0];
+
+    /**
+     * Delay of each candidate in nanoseconds, negative if it is not timed, null if no chain has a timed flow.
+     */
+    private long[] delays;
+
+    /**
+     * Row of the state owning each candidate.
+     */
+    private int[] origins = new int[0];
+
+    /**
+     * Distinct rows reachable in one transition from each row, without evaluating any guard.
+     */
+    private int[][] targets;
+
+    /**
+     * Rows to deactivate for each path, from the current state up to the common ancestor excluded.
+     */
+    private final List<int[]> exits = new ArrayList<>();
+
+    /**
+     * Rows to activate for each path, from the common ancestor excluded down to the next state.
+     */
+    private final List<int[]> entries = new ArrayList<>();
+
+    private TransitionTable(StateId[] states, StateFlowEvent[] events) {
+        super();
+        this.states = states;
+        this.events = events;
+        this.stateOrdinals = Arrays.stream(states).mapToInt(StateId::ordinal).toArray();
+        this.eventOrdinals = Arrays.stream(events).mapToInt(StateFlowEvent::ordinal).toArray();
+        this.rows = index(this.stateOrdinals);
+        this.columns = index(this.eventOrdinals);
+        this.columnCount = events.length;
+        this.parents = new int[states.length];
+        Arrays.fill(this.parents, NONE);
+        this.depths = new int[states.length];
+    }
+
+    /**
+     * Build the table from the registered flows.
+     * @param flows Flows by initial state.
+     * @param executionFlows Execution flows by initial state.
+     * @param groupFlows Flows from a group, in registration order.
+     * @param groupExecutionFlows Execution flows from a group, in registration order.
+     * @param parents Parent of the child states.
+     * @return The compiled table.
+     */
+    static TransitionTable compile(Map<StateId, List<StateFlow>> flows, Map<StateId, List<StateFlowExecution>> executionFlows,
+                                   List<StateFlow> groupFlows, List<StateFlowExecution> groupExecutionFlows, Map<StateId, StateId> parents) {
+        var stateValues = new TreeSet<Integer>();
+        var eventValues = new TreeSet<Integer>();
+        stateValues.addAll(flows.keySet().stream().map(StateId::value).toList());
+        stateValues.addAll(executionFlows.keySet().stream().map(StateId::value).toList());
+        stateValues.addAll(parents.keySet().stream().map(StateId::value).toList());
+        stateValues.addAll(parents.values().stream().map(StateId::value).toList());
+        flows.values().forEach(l -> l.forEach(f -> {
+            stateValues.add(f.nextState.value());
+            eventValues.add(f.event.value());
+        }));
+        executionFlows.values().forEach(l -> l.forEach(f -> eventValues.add(f.event.value())));
+        groupFlows.forEach(f -> {
+            stateValues.add(f.nextState.value());
+            eventValues.add(f.event.value());
+        });
+        groupExecutionFlows.forEach(f -> eventValues.add(f.event.value()));
+        var states = stateValues.stream().map(StateId::valueOf).toArray(StateId[]::new);
+        var events = eventValues.stream().map(StateFlowEvent::valueOf).toArray(StateFlowEvent[]::new);
+        var table = new TransitionTable(states, events);
+        parents.forEach((child, parent) -> table.parents[table.row(child)] = table.row(parent));
+        table.computeDepths();
+        var allExecutionFlows = new ArrayList<>(groupExecutionFlows);
+        executionFlows.values().forEach(allExecutionFlows::addAll);
+        if (allExecutionFlows.stream().anyMatch(f -> !f.before)) {
+            table.executions = new StateFlowExecutionFunction[states.length * events.length][];
+        }
+        if (allExecutionFlows.stream().anyMatch(f -> f.before)) {
+            table.beforeExecutions = new StateFlowExecutionFunction[states.length * events.length][];
+        }
+        List<List<StateFlow>> candidates = new ArrayList<>(Collections.nCopies(states.length * events.length, null));
+        for (int row = 0; row < states.length; row++) {
+            for (int r = row; r != NONE; r = table.parents[r]) {
+                table.fill(row, flows.get(states[r]), executionFlows.get(states[r]), candidates);
+                table.fill(row, members(groupFlows, states[r], f -> f.group), members(groupExecutionFlows, states[r], f -> f.group), candidates);
+            }
+            table.fill(row, flows.get(StateIds.ANY.id), executionFlows.get(StateIds.ANY.id), candidates);
+        }
+        table.computeTimeouts(candidates);
+        table.link(candidates);
+        if (!parents.isEmpty()) {
+            table.computePaths();
+        }
+        table.computeTargets();
+        return table;
+    }
+
+    /**
+     * Create a table from already resolved transitions, without any guard nor execution flow.
+     * @param states State for each row.
+     * @param events Event for each column.
+     * @param parents Parent row for each row, or NONE.
+     * @param transitions Next row for each row x column cell, or NONE.
+     * @return The table.
+     */
+    static TransitionTable load(StateId[] states, StateFlowEvent[] events, int[] parents, IntBuffer transitions) {
+        var table = new TransitionTable(states, events);
+        System.arraycopy(parents, 0, table.parents, 0, states.length);
+        table.computeDepths();
+        table.mapped = transitions;
+        if (Arrays.stream(parents).anyMatch(p -> p != NONE)) {
+            table.computePaths();
+        }
+        table.computeTargets();
+        return table;
+    }
+
+    /**
+     * @return The flows whose group contains a state, null if there is none.
+     */
+    private static <F> List<F> members(List<F> groupFlows, StateId state, Function<F, StateGroup> group) {
+        List<F> result = null;
+        for (F flow : groupFlows) {
+            if (group.apply(flow).contains(state)) {
+                if (result == null) {
+                    result = new ArrayList<>();
+                }
+                result.add(flow);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the delay to arm for each row, the shortest delay of the candidate timed flows of its timeout cell.
+     */
+    private void computeTimeouts(List<List<StateFlow>> candidates) {
+        int column = this.column(StateFlowEvents.TIMEOUT.event);
+        if (column == NONE) {
+            return;
+        }
+        for (int row = 0; row < this.states.length; row++) {
+            List<StateFlow> cell = candidates.get(row * this.columnCount + column);
+            long delay = cell == null ? -1 : cell.stream().mapToLong(f -> f.delay).filter(d -> d >= 0).min().orElse(-1);
+            if (delay >= 0 && this.timeouts == null) {
+                this.timeouts = new long[this.states.length];
+                Arrays.fill(this.timeouts, -1);
+            }
+            if (this.timeouts != null) {
+                this.timeouts[row] = delay;
+            }
+        }
+    }
+
+    private void computeDepths() {
+        for (int row = 0; row < this.states.length; row++) {
+            for (int r = this.parents[row]; r != NONE; r = this.parents[r]) {
+                this.depths[row]++;
+            }
+        }
+    }
+
+    /**
+     * Build the reverse lookup of a list of ordinals.
+     * @param ordinals Ordinals, the position in the array is the index.
+     * @return An array providing the index for each ordinal, or NONE.
+     */
+    private static int[] index(int[] ordinals) {
+        int[] result = new int[Arrays.stream(ordinals).max().orElse(NONE) + 1];
+        Arrays.fill(result, NONE);
+        for (int i = 0; i < ordinals.length; i++) {
+            result[ordinals[i]] = i;
+        }
+        return result;
+    }
+
+    /**
+     * Precompute the deactivation and activation paths of the transitions involving a child state,
+     * transitions between the same states share the same path.
+     */
+    private void computePaths() {
+        Map<Long, Integer> known = new HashMap<>();
+        this.paths = new int[this.transitions == null ? this.mapped.limit() : this.transitions.length];
+        Arrays.fill(this.paths, NONE);
+        for (int cell = 0; cell < this.paths.length; cell++) {
+            int from = this.origin(cell);
+            int to = this.transition(cell);
+            if (to >= 0 && (this.parents[from] != NONE || this.parents[to] != NONE)) {
+                this.paths[cell] = known.computeIfAbsent(((long) from << 32) | to, k -> this.addPath(from, to));
+            }
+        }
+    }
+
+    private int addPath(int from, int to) {
+        int ancestor = this.commonAncestor(from, to);
+        int[] exit = new int[this.depths[from] - (ancestor == NONE ? -1 : this.depths[ancestor])];
+        int i = 0;
+        for (int r = from; r != ancestor; r = this.parents[r]) {
+            exit[i++] = r;
+        }
+        int[] entry = new int[this.depths[to] - (ancestor == NONE ? -1 : this.depths[ancestor])];
+        i = entry.length;
+        for (int r = to; r != ancestor; r = this.parents[r]) {
+            entry[--i] = r;
+        }
+        this.exits.add(exit);
+        this.entries.add(entry);
+        return this.exits.size() - 1;
+    }
+
+    /**
+     * Collect the candidate flows of a row, the first registered flow for an event wins, unless it is guarded:
+     * candidates are then collected until a flow without guard. The timed flows of a same level, the state itself, its groups,
+     * a parent or ANY, are all candidates, but a timed flow still hides the ones of the following levels.
+     */
+    private void fill(int row, List<StateFlow> flows, List<StateFlowExecution> executionFlows, List<List<StateFlow>> candidates) {
+        if (flows != null) {
+            var level = new HashSet<StateFlow>();
+            for (StateFlow flow : flows) {
+                int index = row * this.columnCount + this.column(flow.event);
+                List<StateFlow> cell = candidates.get(index);
+                if (cell == null) {
+                    cell = new ArrayList<>(1);
+                    candidates.set(index, cell);
+                }
+                StateFlow last = cell.isEmpty() ? null : cell.get(cell.size() - 1);
+                if (last == null || last.guard != null || last.delay >= 0 && level.contains(last)) {
+                    cell.add(flow);
+                    level.add(flow);
+                }
+            }
+        }
+        if (executionFlows != null) {
+            for (StateFlowExecution flow : executionFlows) {
+                StateFlowExecutionFunction[][] functions = flow.before ? this.beforeExecutions : this.executions;
+                int index = row * this.columnCount + this.column(flow.event);
+                if (functions[index] == null) {
+                    functions[index] = new StateFlowExecutionFunction[]{flow.function};
+                } else {
+                    functions[index] = Arrays.copyOf(functions[index], functions[index].length + 1);
+                    functions[index][functions[index].length - 1] = flow.function;
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the transition of every cell from its candidates, a cell with guarded candidates references a chain.
+     */
+    private void link(List<List<StateFlow>> candidates) {
+        int[] cells = new int[candidates.size()];
+        Arrays.fill(cells, NONE);
+        var chained = new ArrayList<StateFlow>();
+        var owners = new ArrayList<Integer>();
+        for (int index = 0; index < candidates.size(); index++) {
+            List<StateFlow> cell = candidates.get(index);
+            if (cell == null) {
+                continue;
+            }
+            if (cell.size() == 1 && cell.get(0).guard == null) {
+                cells[index] = this.row(cell.get(0).nextState);
+            } else {
+                cells[index] = chain(chained.size());
+                for (StateFlow flow : cell) {
+                    chained.add(flow);
+                    owners.add(index / this.columnCount);
+                }
+                if (cell.get(cell.size() - 1).guard != null || cell.stream().anyMatch(f -> f.delay >= 0)) {
+                    chained.add(null);
+                    owners.add(index / this.columnCount);
+                }
+            }
+        }
+        if (!chained.isEmpty()) {
+            int base = cells.length;
+            cells = Arrays.copyOf(cells, base + chained.size());
+            this.guards = new IntPredicate[chained.size()];
+            this.origins = owners.stream().mapToInt(Integer::intValue).toArray();
+            if (chained.stream().anyMatch(f -> f != null && f.delay >= 0)) {
+                this.delays = chained.stream().mapToLong(f -> f == null ? -1 : f.delay).toArray();
+            }
+            for (int i = 0; i < chained.size(); i++) {
+                StateFlow flow = chained.get(i);
+                cells[base + i] = flow == null ? NONE : this.row(flow.nextState);
+                this.guards[i] = flow == null ? null : flow.guard;
+            }
+        }
+        this.transitions = cells;
+    }
+
+    /**
+     * Encode the index of the first candidate of a chain so it cannot be confused with a row or NONE.
+     * @param candidate Index of the candidate.
+     * @return The value to store in the cell, the decoding is the same operation.
+     */
+    private static int chain(int candidate) {
+        return -2 - candidate;
+    }
+
+    /**
+     * @param row State row.
+     * @return The ordinal of the state.
+     */
+    int stateOrdinal(int row) {
+        return this.stateOrdinals[row];
+    }
+
+    /**
+     * @param column Event column.
+     * @return The ordinal of the event.
+     */
+    int eventOrdinal(int column) {
+        return this.eventOrdinals[column];
+    }
+
+    /**
+     * @param id State id.
+     * @return The row for the state, or NONE if the state is not in the table.
+     */
+    int row(StateId id) {
+        return lookup(this.rows, id.findOrdinal());
+    }
+
+    /**
+     * @param event Event.
+     * @return The column for the event, or NONE if no flow is using it.
+     */
+    int column(StateFlowEvent event) {
+        return lookup(this.columns, event.findOrdinal());
+    }
+
+    /**
+     * @param event Event value.
+     * @return The column for the event, or NONE if no flow is using it.
+     */
+    int column(int event) {
+        return lookup(this.columns, StateFlowEvent.findOrdinal(event));
+    }
+
+    private static int lookup(int[] index, int ordinal) {
+        return ordinal >= 0 && ordinal < index.length ? index[ordinal] : NONE;
+    }
+
+    StateId state(int row) {
+        return this.states[row];
+    }
+
+    StateFlowEvent event(int column) {
+        return this.events[column];
+    }
+
+    /**
+     * @return True if the table contains guarded, timed or execution flows, which cannot be stored outside the memory.
+     */
+    boolean hasFunctions() {
+        return this.guards.length > 0 || this.timeouts != null || this.executions != null || this.beforeExecutions != null;
+    }
+
+    /**
+     * @param row State row.
+     * @return The delay of the timed flow leaving the state in nanoseconds, negative if there is none.
+     */
+    long timeout(int row) {
+        return this.timeouts == null || row == NONE ? -1 : this.timeouts[row];
+    }
+
+    /**
+     * @return True if at least one state has a timed flow.
+     */
+    boolean hasTimeouts() {
+        return this.timeouts != null;
+    }
+
+    int rowCount() {
+        return this.states.length;
+    }
+
+    int columnCount() {
+        return this.columnCount;
+    }
+
+    /**
+     * @param row Row of the state.
+     * @return The row of the parent state, or NONE.
+     */
+    int parent(int row) {
+        return this.parents[row];
+    }
+
+    /**
+     * Find the deepest state remaining active during a transition, a transition to the same state leaves and enters it again.
+     * @param from Current row.
+     * @param to Next row.
+     * @return The row of the common ancestor, or NONE if the states do not share any.
+     */
+    int commonAncestor(int from, int to) {
+        if (from == to) {
+            return this.parents[from];
+        }
+        int a = from;
+        int b = to;
+        while (this.depths[a] > this.depths[b]) {
+            a = this.parents[a];
+        }
+        while (this.depths[b] > this.depths[a]) {
+            b = this.parents[b];
+        }
+        while (a != b) {
+            a = this.parents[a];
+            b = this.parents[b];
+        }
+        return a;
+    }
+
+    /**
+     * Find the cell to apply for an event, evaluating the guards of the cell in registration order if it has some.
+     * @param row Current row.
+     * @param column Event column.
+     * @return The cell index, to use with next and path.
+     */
+    int cell(int row, int column) {
+        return this.cell(row, column, Long.MAX_VALUE);
+    }
+
+    /**
+     * Find the cell to apply for an event, ignoring the timed flows whose delay is not elapsed.
+     * @param row Current row.
+     * @param column Event column.
+     * @param elapsed Time spent in the current state in nanoseconds.
+     * @return The cell index, to use with next and path.
+     */
+    int cell(int row, int column, long elapsed) {
+        int cell = row * this.columnCount + column;
+        int next = this.transition(cell);
+        if (next >= NONE) {
+            return cell;
+        }
+        int base = this.states.length * this.columnCount;
+        int value = this.states[row].value();
+        for (int candidate = chain(next); ; candidate++) {
+            if (this.delays != null && this.delays[candidate] > elapsed) {
+                continue;
+            }
+            IntPredicate guard = this.guards[candidate];
+            if (guard == null || guard.test(value)) {
+                return base + candidate;
+            }
+        }
+    }
+
+    /**
+     * @param index Cell or candidate index.
+     * @return The transition at the index, from the array of a compiled table or the mapped file of a loaded one.
+     */
+    private int transition(int index) {
+        return this.transitions == null ? this.mapped.get(index) : this.transitions[index];
+    }
+
+    /**
+     * @param row Current row.
+     * @param column Event column.
+     * @return True if the cell depends on guards or delays, and cannot be resolved without evaluating them.
+     */
+    boolean isGuarded(int row, int column) {
+        return this.transition(row * this.columnCount + column) < NONE;
+    }
+
+    /**
+     * Find the next timed flow to wait for once the ones with a delay up to elapsed were rejected by their guard.
+     * @param row Current row.
+     * @param elapsed Time spent in the current state in nanoseconds.
+     * @return The delay of the next timed flow leaving the state, negative if there is none.
+     */
+    long nextTimeout(int row, long elapsed) {
+        int column = this.column(StateFlowEvents.TIMEOUT.event);
+        if (this.delays == null || column == NONE) {
+            return -1;
+        }
+        int next = this.transition(row * this.columnCount + column);
+        if (next >= NONE) {
+            return -1;
+        }
+        long result = -1;
+        for (int candidate = chain(next); this.hasNextCandidate(candidate); candidate++) {
+            long delay = this.delays[candidate];
+            if (delay > elapsed && (result < 0 || delay < result)) {
+                result = delay;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param candidate Index of a candidate.
+     * @return True if the candidate is guarded or timed, so it can be rejected and is followed by other candidates.
+     */
+    private boolean hasNextCandidate(int candidate) {
+        return this.guards[candidate] != null || this.delays != null && this.delays[candidate] >= 0;
+    }
+
+    /**
+     * @param cell Cell index, as provided by cell.
+     * @return The next row, or NONE if there is no transition.
+     */
+    int next(int cell) {
+        return this.transition(cell);
+    }
+
+    /**
+     * @param cell Cell index, as provided by cell.
+     * @return The precomputed path of the transition, or NONE if only the current and next states are involved.
+     */
+    int path(int cell) {
+        return this.paths == null ? NONE : this.paths[cell];
+    }
+
+    /**
+     * Provide the rows reachable from a row in one transition, without evaluating any guard.
+     * @param row Current row.
+     * @return The distinct reachable rows, computed once with the table, must not be modified.
+     */
+    int[] targets(int row) {
+        return this.targets[row];
+    }
+
+    private void computeTargets() {
+        this.targets = new int[this.states.length][];
+        var reachable = new BitSet(this.states.length);
+        for (int row = 0; row < this.states.length; row++) {
+            reachable.clear();
+            for (int column = 0; column < this.columnCount; column++) {
+                int next = this.transition(row * this.columnCount + column);
+                if (next >= 0) {
+                    reachable.set(next);
+                } else if (next < NONE) {
+                    int candidate = chain(next);
+                    do {
+                        int target = this.transition(this.states.length * this.columnCount + candidate);
+                        if (target != NONE) {
+                            reachable.set(target);
+                        }
+                    } while (this.hasNextCandidate(candidate++));
+                }
+            }
+            this.targets[row] = reachable.stream().toArray();
+        }
+    }
+
+    /**
+     * @param row Reached row.
+     * @param column Event column.
+     * @return The functions to execute after the state change, or null if there is none.
+     */
+    StateFlowExecutionFunction[] executions(int row, int column) {
+        return this.executions == null ? null : this.executions[row * this.columnCount + column];
+    }
+
+    /**
+     * @param row Initial row.
+     * @param column Event column.
+     * @return The functions to execute before the state change, or null if there is none.
+     */
+    StateFlowExecutionFunction[] beforeExecutions(int row, int column) {
+        return this.beforeExecutions == null ? null : this.beforeExecutions[row * this.columnCount + column];
+    }
+
+    /**
+     * @param row Initial row.
+     * @param target Reached row.
+     * @param column Event column.
+     * @return True if a function is executed for the event.
+     */
+    boolean hasExecutions(int row, int target, int column) {
+        return this.executions(target, column) != null || this.beforeExecutions(row, column) != null;
+    }
+
+    /**
+     * @param cell Cell index.
+     * @return The row owning the cell.
+     */
+    private int origin(int cell) {
+        int base = this.states.length * this.columnCount;
+        return cell < base ? cell / this.columnCount : this.origins[cell - base];
+    }
+
+    /**
+     * @param path Path index.
+     * @return The rows to deactivate, in order.
+     */
+    int[] exits(int path) {
+        return this.exits.get(path);
+    }
+
+    /**
+     * @param path Path index.
+     * @return The rows to activate, in order.
+     */
+    int[] entries(int path) {
+        return this.entries.get(path);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed size ring keeping the last events processed by a StateManager, with the state before and after each of them.
+ * Entries are stored as primitive longs, recording does not allocate nor lock, it must be done by a single thread,
+ * the trace can be read or dumped from any thread.
+ * @author Grégory Van den Borre
+ */
+public final class TransitionTrace {
+
+    /**
+     * First bytes of a dumped trace.
+     */
+    static final int MAGIC = 0x59534d54;
+
+    /**
+     * Version of the dump format.
+     */
+    static final int VERSION = 1;
+
+    private static final VarHandle WRITTEN;
+
+    static {
+        try {
+            WRITTEN = MethodHandles.lookup().findVarHandle(TransitionTrace.class, "written", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Number of longs of an entry: timestamp, initial and next states, event.
+     */
+    private static final int ENTRY_SIZE = 3;
+
+    private final long[] entries;
+
+    private final int mask;
+
+    /**
+     * Wall clock time when the trace was created, in nanoseconds since the epoch.
+     */
+    private final long originEpochNanos;
+
+    /**
+     * Value of System.nanoTime when the trace was created.
+     */
+    private final long originNanos;
+
+    /**
+     * Number of entries written since the creation, published with release semantics once an entry is complete.
+     */
+    @SuppressWarnings("unused")
+    private volatile long written;
+
+    /**
+     * Create a new trace.
+     * @param capacity Number of entries kept, rounded up to a power of two minus one: the slot being written is never read.
+     */
+    TransitionTrace(int capacity) {
+        super();
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity) << 1;
+        this.entries = new long[size * ENTRY_SIZE];
+        this.mask = size - 1;
+        this.originEpochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        this.originNanos = System.nanoTime();
+    }
+
+    /**
+     * Record an event, only one thread must record.
+     * @param from Value of the state before the event.
+     * @param event Event value.
+     * @param to Value of the state after the event.
+     */
+    void record(int from, int event, int to) {
+        long n = (long) WRITTEN.getOpaque(this);
+        int index = ((int) n & this.mask) * ENTRY_SIZE;
+        // The slot is overwritten only once the previous sequence is visible, a reader seeing the new values sees it too.
+        VarHandle.storeStoreFence();
+        this.entries[index] = System.nanoTime();
+        this.entries[index + 1] = ((long) from << 32) | (to & 0xFFFFFFFFL);
+        this.entries[index + 2] = event;
+        WRITTEN.setRelease(this, n + 1);
+    }
+
+    /**
+     * @return The maximum number of entries kept.
+     */
+    public int getCapacity() {
+        return this.mask;
+    }
+
+    /**
+     * Copy the entries currently in the trace, entries that may have been overwritten during the copy are not returned.
+     * @return The entries, from the oldest to the most recent.
+     */
+    public List<Entry> snapshot() {
+        long end = (long) WRITTEN.getAcquire(this);
+        long start = Math.max(0, end - this.getCapacity());
+        long[] copy = new long[(int) (end - start) * ENTRY_SIZE];
+        for (long n = start; n < end; n++) {
+            int index = ((int) n & this.mask) * ENTRY_SIZE;
+            int target = (int) (n - start) * ENTRY_SIZE;
+            copy[target] = this.entries[index];
+            copy[target + 1] = this.entries[index + 1];
+            copy[target + 2] = this.entries[index + 2];
+        }
+        // Re-check the sequence after the copy, the slots overwritten meanwhile are discarded.
+        VarHandle.acquireFence();
+        long valid = Math.max(start, (long) WRITTEN.getAcquire(this) - this.getCapacity());
+        var result = new ArrayList<Entry>((int) (end - valid));
+        for (long n = valid; n < end; n++) {
+            int index = (int) (n - start) * ENTRY_SIZE;
+            long states = copy[index + 1];
+            result.add(new Entry(this.originEpochNanos + copy[index] - this.originNanos, (int) (states >>> 32), (int) copy[index + 2], (int) states));
+        }
+        return result;
+    }
+
+    /**
+     * Write the entries currently in the trace in a compact binary form, to be read with TransitionTraceReader.
+     * @param output Stream to write into, not closed.
+     * @throws IOException If the stream cannot be written.
+     */
+    public void dump(OutputStream output) throws IOException {
+        List<Entry> snapshot = this.snapshot();
+        var data = new DataOutputStream(new BufferedOutputStream(output));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(snapshot.size());
+        for (Entry entry : snapshot) {
+            data.writeLong(entry.timestamp());
+            data.writeInt(entry.from());
+            data.writeInt(entry.event());
+            data.writeInt(entry.to());
+        }
+        data.flush();
+    }
+
+    /**
+     * Write the entries currently in the trace in a file.
+     * @param file File to create or replace.
+     * @throws IOException If the file cannot be written.
+     */
+    public void dump(Path file) throws IOException {
+        try (OutputStream output = Files.newOutputStream(file)) {
+            this.dump(output);
+        }
+    }
+
+    /**
+     * Dump the trace in a file when a thread terminates because of an uncaught exception, the previous default handler is still called.
+     * @param file File to create or replace.
+     */
+    public void dumpOnCrash(Path file) {
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, error) -> {
+            try {
+                this.dump(file);
+            } catch (IOException e) {
+                error.addSuppressed(e);
+            }
+            if (previous != null) {
+                previous.uncaughtException(thread, error);
+            } else {
+                thread.getThreadGroup().uncaughtException(thread, error);
+            }
+        });
+    }
+
+    /**
+     * A processed event.
+     * @param timestamp Time of the event, in nanoseconds since the epoch.
+     * @param from Value of the state before the event.
+     * @param event Event value.
+     * @param to Value of the state after the event, same as from if the event did not cause a transition.
+     */
+    public record Entry(long timestamp, int from, int event, int to) {
+    }
+}
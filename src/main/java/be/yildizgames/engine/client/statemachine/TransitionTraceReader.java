@@ -0,0 +1,100 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read a trace dumped by a TransitionTrace.
+ * @author Grégory Van den Borre
+ */
+public final class TransitionTraceReader {
+
+    private TransitionTraceReader() {
+        super();
+    }
+
+    /**
+     * Read a dumped trace.
+     * @param input Stream to read, not closed.
+     * @return The entries, from the oldest to the most recent.
+     * @throws IOException If the stream cannot be read or does not contain a trace.
+     */
+    public static List<TransitionTrace.Entry> read(InputStream input) throws IOException {
+        var data = new DataInputStream(new BufferedInputStream(input));
+        if (data.readInt() != TransitionTrace.MAGIC) {
+            throw new IOException("Not a transition trace.");
+        }
+        int version = data.readInt();
+        if (version != TransitionTrace.VERSION) {
+            throw new IOException("Unsupported transition trace version: " + version);
+        }
+        int size = data.readInt();
+        var result = new ArrayList<TransitionTrace.Entry>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new TransitionTrace.Entry(data.readLong(), data.readInt(), data.readInt(), data.readInt()));
+        }
+        return result;
+    }
+
+    /**
+     * Read a dumped trace file.
+     * @param file File to read.
+     * @return The entries, from the oldest to the most recent.
+     * @throws IOException If the file cannot be read or does not contain a trace.
+     */
+    public static List<TransitionTrace.Entry> read(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return read(input);
+        }
+    }
+
+    /**
+     * Print a dumped trace, one line per entry.
+     * @param args Path of the dump file.
+     * @throws IOException If the file cannot be read or does not contain a trace.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: TransitionTraceReader <file>");
+            return;
+        }
+        for (TransitionTrace.Entry entry : read(Path.of(args[0]))) {
+            long nanos = entry.timestamp();
+            Instant time = Instant.ofEpochSecond(TimeUnit.NANOSECONDS.toSeconds(nanos), nanos % 1_000_000_000L);
+            System.out.println(time + " " + entry.from() + " --" + entry.event() + "--> " + entry.to());
+        }
+    }
+}
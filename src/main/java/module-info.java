@@ -24,6 +24,9 @@
 
 module be.yildizgames.engine.client.addon.statemachine {
 
+    requires transitive java.management;
+    requires jdk.jfr;
+
     exports be.yildizgames.engine.client.statemachine;
 
 }
\ No newline at end of file
@@ -28,6 +28,10 @@ public class DummyState implements State {
 
     private final StateId id;
 
+    int activated;
+
+    int deactivated;
+
     public DummyState(StateId id) {
         this.id = id;
     }
@@ -38,12 +42,12 @@ public class DummyState implements State {
 
     @Override
     public void activate() {
-
+        this.activated++;
     }
 
     @Override
     public void deactivate() {
-
+        this.deactivated++;
     }
 
     @Override
@@ -0,0 +1,79 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+package be.yildizgames.engine.client.statemachine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Nested
+    public class Record {
+
+        @Test
+        public void happyFlow() {
+            var histogram = new LatencyHistogram();
+            for (int i = 1; i <= 100; i++) {
+                histogram.record(i * 1000L);
+            }
+            Assertions.assertEquals(100, histogram.getCount());
+            Assertions.assertEquals(100_000, histogram.getMax());
+            Assertions.assertEquals(50_500, histogram.getMean(), 0.001);
+            Assertions.assertEquals(50_000, histogram.getValueAtPercentile(50), 50_000 * 0.0625);
+            Assertions.assertEquals(99_000, histogram.getValueAtPercentile(99), 99_000 * 0.0625);
+            Assertions.assertEquals(100_000, histogram.getValueAtPercentile(100));
+        }
+
+        @Test
+        public void small() {
+            var histogram = new LatencyHistogram();
+            histogram.record(3);
+            histogram.record(-5);
+            Assertions.assertEquals(0, histogram.getValueAtPercentile(50));
+            Assertions.assertEquals(3, histogram.getValueAtPercentile(100));
+        }
+
+        @Test
+        public void large() {
+            var histogram = new LatencyHistogram();
+            histogram.record(Long.MAX_VALUE);
+            Assertions.assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+        }
+
+        @Test
+        public void empty() {
+            var histogram = new LatencyHistogram();
+            Assertions.assertEquals(0, histogram.getValueAtPercentile(99));
+            Assertions.assertEquals(0, histogram.getMean());
+        }
+
+        @Test
+        public void invalidPercentile() {
+            var histogram = new LatencyHistogram();
+            Assertions.assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+package be.yildizgames.engine.client.statemachine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+
+public class StateIdTest {
+
+    @Nested
+    public class ValueOf {
+
+        @Test
+        public void sameInstance() {
+            Assertions.assertSame(StateId.valueOf(3), StateId.valueOf(3));
+        }
+
+        @Test
+        public void negative() {
+            Assertions.assertSame(StateIds.START_APP.id, StateId.valueOf(-2));
+        }
+
+        @Test
+        public void notCached() {
+            StateId.valueOf(1_000_000).ordinal();
+            StateId.valueOf(-1_000_000).ordinal();
+            Assertions.assertSame(StateId.valueOf(1_000_000), StateId.valueOf(1_000_000));
+            Assertions.assertSame(StateId.valueOf(-1_000_000), StateId.valueOf(-1_000_000));
+        }
+
+        @Test
+        public void lookupDoesNotIntern() {
+            Assertions.assertEquals(StateId.valueOf(3_000_000), StateId.valueOf(3_000_000));
+            Assertions.assertNotSame(StateId.valueOf(3_000_000), StateId.valueOf(3_000_000));
+            Assertions.assertTrue(StateId.valueOf(3_000_001).findOrdinal() < 0);
+            Assertions.assertTrue(StateFlowEvent.valueOf(3_000_001).findOrdinal() < 0);
+        }
+
+        @Test
+        public void equalsToConstructed() {
+            Assertions.assertEquals(new StateId(2_000_000), StateId.valueOf(2_000_000));
+        }
+
+    }
+
+    @Nested
+    public class Ordinal {
+
+        @Test
+        public void stable() {
+            Assertions.assertEquals(StateId.valueOf(50_000).ordinal(), StateId.valueOf(50_000).ordinal());
+            Assertions.assertEquals(StateId.valueOf(12).ordinal(), new StateId(12).ordinal());
+        }
+
+        @Test
+        public void distinct() {
+            Assertions.assertNotEquals(StateId.valueOf(60_000).ordinal(), StateId.valueOf(60_001).ordinal());
+            Assertions.assertNotEquals(StateId.valueOf(13).ordinal(), StateId.valueOf(14).ordinal());
+        }
+
+        @Test
+        public void eventOrdinal() {
+            Assertions.assertEquals(StateFlowEvent.valueOf(70_000).ordinal(), StateFlowEvent.valueOf(70_000).ordinal());
+            Assertions.assertNotEquals(StateFlowEvent.valueOf(70_000).ordinal(), StateFlowEvent.valueOf(70_001).ordinal());
+        }
+
+        @Test
+        public void manyInterned() {
+            var ordinals = new HashSet<Integer>();
+            for (int i = 0; i < 10_000; i++) {
+                ordinals.add(StateId.valueOf(-1_000_000 - i * 7).ordinal());
+            }
+            Assertions.assertEquals(10_000, ordinals.size());
+            for (int i = 0; i < 10_000; i++) {
+                Assertions.assertSame(StateId.valueOf(-1_000_000 - i * 7), StateId.valueOf(-1_000_000 - i * 7));
+                Assertions.assertTrue(ordinals.contains(StateId.valueOf(-1_000_000 - i * 7).ordinal()));
+            }
+        }
+
+    }
+}
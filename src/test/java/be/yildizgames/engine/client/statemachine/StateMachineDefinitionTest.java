@@ -0,0 +1,378 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+package be.yildizgames.engine.client.statemachine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+public class StateMachineDefinitionTest {
+
+    private static StateMachineDefinitionBuilder<DummyState> builder() {
+        return StateMachineDefinition.<DummyState>builder()
+                .registerGameState(new DummyState(StateIds.TITLE_SCREEN.id))
+                .registerGameState(StateIds.LOADING_SCREEN.id, () -> new DummyState(StateIds.LOADING_SCREEN.id))
+                .registerGameState(new DummyState(StateIds.MAIN_SCREEN.id))
+                .registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_SUCCESSFUL).goFrom(StateIds.TITLE_SCREEN).to(StateIds.LOADING_SCREEN))
+                .registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateIds.LOADING_SCREEN).to(StateIds.MAIN_SCREEN))
+                .registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_DISCONNECTED).goFrom(StateIds.ANY).to(StateIds.TITLE_SCREEN));
+    }
+
+    @Nested
+    public class Build {
+
+        @Test
+        public void danglingTarget() {
+            var builder = builder().registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_APP).goFrom(StateIds.ANY).to(StateIds.APP_CLOSED));
+            Assertions.assertThrows(IllegalArgumentException.class, builder::build);
+        }
+
+        @Test
+        public void unknownInitialState() {
+            var definition = builder().build();
+            Assertions.assertThrows(IllegalArgumentException.class, () -> definition.newInstance(StateIds.GAME_OVER.id));
+        }
+
+    }
+
+    @Nested
+    public class Instance {
+
+        @Test
+        public void happyFlow() {
+            var definition = builder().build();
+            var instance = definition.newInstance(StateIds.TITLE_SCREEN.id);
+            Assertions.assertEquals(1, instance.getCurrentState().activated);
+            instance.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+            instance.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(StateIds.MAIN_SCREEN.id, instance.getCurrentStateId());
+            instance.processEvent(StateFlowEvents.AUTHENTICATION_DISCONNECTED);
+            Assertions.assertEquals(StateIds.TITLE_SCREEN.id, instance.getCurrentStateId());
+        }
+
+        @Test
+        public void groupFlow() {
+            var definition = builder()
+                    .registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION)
+                            .goFrom(StateGroup.of("screens", StateIds.LOADING_SCREEN, StateIds.MAIN_SCREEN)).to(StateIds.TITLE_SCREEN))
+                    .build();
+            var instance = definition.newInstance(StateIds.TITLE_SCREEN.id);
+            instance.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+            instance.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(StateIds.TITLE_SCREEN.id, instance.getCurrentStateId());
+        }
+
+        @Test
+        public void sharedStates() {
+            var definition = builder().build();
+            var first = definition.newInstance(StateIds.TITLE_SCREEN.id);
+            var second = definition.newInstance(StateIds.TITLE_SCREEN.id);
+            first.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+            second.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+            Assertions.assertSame(first.getCurrentState(), second.getCurrentState());
+            Assertions.assertEquals(2, first.getCurrentState().activated);
+        }
+
+    }
+
+    @Nested
+    public class Pool {
+
+        @Test
+        public void independentMachines() {
+            var pool = builder().build().newPool(100_000, StateIds.TITLE_SCREEN.id);
+            pool.processEvent(42, StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+            Assertions.assertEquals(StateIds.LOADING_SCREEN.id, pool.getCurrentStateId(42));
+            Assertions.assertEquals(StateIds.TITLE_SCREEN.id, pool.getCurrentStateId(41));
+            Assertions.assertEquals(100_000, pool.size());
+        }
+
+        @Test
+        public void initialStateActivatedOnce() {
+            var title = new DummyState(StateIds.TITLE_SCREEN.id);
+            var pool = StateMachineDefinition.<DummyState>builder()
+                    .registerGameState(title)
+                    .registerGameState(new DummyState(StateIds.MAIN_SCREEN.id))
+                    .registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateIds.TITLE_SCREEN).to(StateIds.MAIN_SCREEN))
+                    .build()
+                    .newPool(1_000, StateIds.TITLE_SCREEN.id);
+            Assertions.assertEquals(1_000, pool.size());
+            Assertions.assertEquals(1, title.activated);
+        }
+
+        @Test
+        public void timedFlows() {
+            var pool = builder()
+                    .registerGameStateFlow(StateFlow.after(Duration.ofSeconds(1)).goFrom(StateIds.LOADING_SCREEN).to(StateIds.MAIN_SCREEN))
+                    .build()
+                    .newPool(100_000, StateIds.TITLE_SCREEN.id);
+            for (int i = 0; i < 100_000; i += 2) {
+                pool.processEvent(i, StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+            }
+            pool.processEvent(0, StateFlowEvents.AUTHENTICATION_DISCONNECTED);
+            pool.tick(1_000_000_000L);
+            Assertions.assertEquals(StateIds.TITLE_SCREEN.id, pool.getCurrentStateId(0));
+            Assertions.assertEquals(StateIds.TITLE_SCREEN.id, pool.getCurrentStateId(1));
+            Assertions.assertEquals(StateIds.MAIN_SCREEN.id, pool.getCurrentStateId(2));
+            Assertions.assertEquals(StateIds.MAIN_SCREEN.id, pool.getCurrentStateId(99_998));
+        }
+
+    }
+
+    @Nested
+    public class Parallel {
+
+        private int[][] events(int size) {
+            int[][] events = new int[size][];
+            for (int i = 0; i < size; i += 2) {
+                events[i] = new int[]{StateFlowEvents.AUTHENTICATION_SUCCESSFUL.event.value(), StateFlowEvents.LOADING_COMPLETED.event.value()};
+            }
+            return events;
+        }
+
+        @Test
+        public void parallelCallbacks() {
+            var pool = builder().build().newPool(10_000, StateIds.TITLE_SCREEN.id);
+            pool.processEvents(this.events(10_000), ForkJoinPool.commonPool());
+            Assertions.assertEquals(StateIds.MAIN_SCREEN.id, pool.getCurrentStateId(9_998));
+            Assertions.assertEquals(StateIds.TITLE_SCREEN.id, pool.getCurrentStateId(9_999));
+        }
+
+        @Test
+        public void callerCallbacksInMachineOrder() {
+            var threads = new ArrayList<Thread>();
+            var pool = builder()
+                    .registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateIds.MAIN_SCREEN).execute(() -> threads.add(Thread.currentThread())))
+                    .callbackMode(CallbackMode.CALLER)
+                    .build()
+                    .newPool(10_000, StateIds.TITLE_SCREEN.id);
+            pool.processEvents(this.events(10_000), new ForkJoinPool(4));
+            Assertions.assertEquals(5_000, threads.size());
+            Assertions.assertTrue(threads.stream().allMatch(t -> t == Thread.currentThread()));
+            Assertions.assertEquals(StateIds.MAIN_SCREEN.id, pool.getCurrentStateId(0));
+        }
+
+        @Test
+        public void sharedStateCallbacksSerialized() {
+            var inFlight = new AtomicInteger();
+            var overlaps = new AtomicInteger();
+            var main = new DummyState(StateIds.MAIN_SCREEN.id) {
+                @Override
+                public void activate() {
+                    if(inFlight.incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    Thread.onSpinWait();
+                    inFlight.decrementAndGet();
+                }
+            };
+            var pool = StateMachineDefinition.<DummyState>builder()
+                    .registerGameState(new DummyState(StateIds.TITLE_SCREEN.id))
+                    .registerGameState(StateIds.LOADING_SCREEN.id, () -> new DummyState(StateIds.LOADING_SCREEN.id))
+                    .registerGameState(main)
+                    .registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_SUCCESSFUL).goFrom(StateIds.TITLE_SCREEN).to(StateIds.LOADING_SCREEN))
+                    .registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateIds.LOADING_SCREEN).to(StateIds.MAIN_SCREEN))
+                    .build()
+                    .newPool(100_000, StateIds.TITLE_SCREEN.id);
+            pool.processEvents(this.events(100_000), new ForkJoinPool(4));
+            Assertions.assertEquals(StateIds.MAIN_SCREEN.id, pool.getCurrentStateId(0));
+            Assertions.assertEquals(0, overlaps.get());
+        }
+
+        @Test
+        public void wrongSize() {
+            var pool = builder().build().newPool(10, StateIds.TITLE_SCREEN.id);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> pool.processEvents(new int[9][], ForkJoinPool.commonPool()));
+        }
+
+    }
+
+    @Nested
+    public class File {
+
+        private StateMachineDefinitionBuilder<DummyState> states() {
+            return StateMachineDefinition.<DummyState>builder()
+                    .registerGameState(new DummyState(StateIds.TITLE_SCREEN.id))
+                    .registerGameState(StateIds.LOADING_SCREEN.id, () -> new DummyState(StateIds.LOADING_SCREEN.id))
+                    .registerGameState(new DummyState(StateIds.MAIN_SCREEN.id));
+        }
+
+        /**
+         * Write a flow graph file with a valid checksum.
+         * @param values Int values of the file, after the magic and version.
+         * @return The created file.
+         */
+        private Path write(int... values) throws IOException {
+            var file = Files.createTempFile("flows", ".bin");
+            var buffer = ByteBuffer.allocate((values.length + 3) * Integer.BYTES);
+            buffer.putInt(FlowGraphFormat.MAGIC).putInt(FlowGraphFormat.VERSION);
+            for (int value : values) {
+                buffer.putInt(value);
+            }
+            var crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.putInt((int) crc.getValue());
+            Files.write(file, buffer.array());
+            return file;
+        }
+
+        @Test
+        public void happyFlow() throws IOException {
+            var file = Files.createTempFile("flows", ".bin");
+            try {
+                builder().build().write(file);
+                var definition = this.states().load(file);
+                var instance = definition.newInstance(StateIds.TITLE_SCREEN.id);
+                instance.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+                instance.processEvent(StateFlowEvents.LOADING_COMPLETED);
+                Assertions.assertEquals(StateIds.MAIN_SCREEN.id, instance.getCurrentStateId());
+                instance.processEvent(StateFlowEvents.AUTHENTICATION_DISCONNECTED);
+                Assertions.assertEquals(StateIds.TITLE_SCREEN.id, instance.getCurrentStateId());
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        @Test
+        public void hierarchy() throws IOException {
+            var file = Files.createTempFile("flows", ".bin");
+            try {
+                builder().registerParentState(StateIds.LOADING_SCREEN.id, StateIds.TITLE_SCREEN.id).build().write(file);
+                var definition = this.states().load(file);
+                var instance = definition.newInstance(StateIds.TITLE_SCREEN.id);
+                var title = instance.getCurrentState();
+                instance.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+                Assertions.assertEquals(0, title.deactivated);
+                instance.processEvent(StateFlowEvents.LOADING_COMPLETED);
+                Assertions.assertEquals(1, title.deactivated);
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        @Test
+        public void corrupted() throws IOException {
+            var file = Files.createTempFile("flows", ".bin");
+            try {
+                builder().build().write(file);
+                byte[] content = Files.readAllBytes(file);
+                content[content.length - 8] ^= 1;
+                Files.write(file, content);
+                Assertions.assertThrows(IOException.class, () -> this.states().load(file));
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        @Test
+        public void missingState() throws IOException {
+            var file = Files.createTempFile("flows", ".bin");
+            try {
+                builder().build().write(file);
+                var states = StateMachineDefinition.<DummyState>builder().registerGameState(new DummyState(StateIds.TITLE_SCREEN.id));
+                Assertions.assertThrows(IllegalArgumentException.class, () -> states.load(file));
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        @Test
+        public void parentWithoutState() throws IOException {
+            var file = Files.createTempFile("flows", ".bin");
+            try {
+                StateMachineDefinition.<DummyState>builder()
+                        .registerGameState(new DummyState(StateIds.TITLE_SCREEN.id))
+                        .registerGameState(new DummyState(StateIds.LOADING_SCREEN.id))
+                        .registerGameState(new DummyState(StateIds.MAIN_SCREEN.id))
+                        .registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_SUCCESSFUL).goFrom(StateIds.TITLE_SCREEN).to(StateIds.LOADING_SCREEN))
+                        .registerParentState(StateIds.LOADING_SCREEN.id, StateIds.MAIN_SCREEN.id)
+                        .build()
+                        .write(file);
+                var instance = StateMachineDefinition.<DummyState>builder()
+                        .registerGameState(new DummyState(StateIds.TITLE_SCREEN.id))
+                        .registerGameState(new DummyState(StateIds.LOADING_SCREEN.id))
+                        .load(file)
+                        .newInstance(StateIds.TITLE_SCREEN.id);
+                Assertions.assertThrows(IllegalArgumentException.class, () -> instance.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL));
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        @Test
+        public void parentCycle() throws IOException {
+            int title = StateIds.TITLE_SCREEN.id.value();
+            int main = StateIds.MAIN_SCREEN.id.value();
+            int event = StateFlowEvents.LOADING_COMPLETED.event.value();
+            var file = this.write(2, 1, title, main, event, 1, 0, -1, -1);
+            try {
+                Assertions.assertThrows(IOException.class, () -> this.states().load(file));
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        @Test
+        public void duplicateState() throws IOException {
+            int title = StateIds.TITLE_SCREEN.id.value();
+            int event = StateFlowEvents.LOADING_COMPLETED.event.value();
+            var file = this.write(2, 1, title, title, event, -1, -1, -1, -1);
+            try {
+                Assertions.assertThrows(IOException.class, () -> this.states().load(file));
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        @Test
+        public void duplicateEvent() throws IOException {
+            int title = StateIds.TITLE_SCREEN.id.value();
+            int event = StateFlowEvents.LOADING_COMPLETED.event.value();
+            var file = this.write(1, 2, title, event, event, -1, -1, -1);
+            try {
+                Assertions.assertThrows(IOException.class, () -> this.states().load(file));
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        @Test
+        public void executionNotWritten() {
+            var definition = builder().registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_APP).goFrom(StateIds.ANY).execute(() -> {})).build();
+            Assertions.assertThrows(IllegalArgumentException.class, () -> definition.write(Path.of("unused")));
+        }
+
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+public class StateMachineRegionsTest {
+
+    private static final StateId CONNECTED = StateId.valueOf(100);
+
+    private static final StateId DISCONNECTED = StateId.valueOf(101);
+
+    private static final StateId MUTED = StateId.valueOf(200);
+
+    private static final StateId PLAYING = StateId.valueOf(201);
+
+    private static StateMachineDefinition<DummyState> screens() {
+        return StateMachineDefinition.<DummyState>builder()
+                .registerGameState(new DummyState(StateIds.TITLE_SCREEN.id))
+                .registerGameState(new DummyState(StateIds.MAIN_SCREEN.id))
+                .registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_SUCCESSFUL).goFrom(StateIds.TITLE_SCREEN).to(StateIds.MAIN_SCREEN))
+                .registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_DISCONNECTED).goFrom(StateIds.ANY).to(StateIds.TITLE_SCREEN))
+                .build();
+    }
+
+    private static StateMachineDefinition<DummyState> connection() {
+        return StateMachineDefinition.<DummyState>builder()
+                .registerGameState(new DummyState(CONNECTED))
+                .registerGameState(new DummyState(DISCONNECTED))
+                .registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_DISCONNECTED).goFrom(CONNECTED).to(DISCONNECTED))
+                .registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_SUCCESSFUL).goFrom(DISCONNECTED).to(CONNECTED))
+                .build();
+    }
+
+    private static StateMachineDefinition<DummyState> audio() {
+        return StateMachineDefinition.<DummyState>builder()
+                .registerGameState(new DummyState(MUTED))
+                .registerGameState(new DummyState(PLAYING))
+                .registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(MUTED).to(PLAYING))
+                .registerGameStateFlow(StateFlow.after(Duration.ofMillis(10)).goFrom(PLAYING).to(MUTED))
+                .build();
+    }
+
+    private static StateMachineRegions<DummyState> machine() {
+        return StateMachineRegions.<DummyState>builder()
+                .region(screens(), StateIds.TITLE_SCREEN.id)
+                .region(connection(), DISCONNECTED)
+                .region(audio(), MUTED)
+                .build();
+    }
+
+    @Nested
+    public class ProcessEvent {
+
+        @Test
+        public void happyFlow() {
+            var machine = machine();
+            Assertions.assertEquals(List.of(StateIds.TITLE_SCREEN.id, DISCONNECTED, MUTED), machine.getConfiguration());
+            machine.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+            Assertions.assertEquals(List.of(StateIds.MAIN_SCREEN.id, CONNECTED, MUTED), machine.getConfiguration());
+            machine.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(PLAYING, machine.getCurrentStateId(2));
+            Assertions.assertTrue(machine.isActive(CONNECTED));
+            Assertions.assertFalse(machine.isActive(DISCONNECTED));
+        }
+
+        @Test
+        public void statesActivated() {
+            var machine = machine();
+            Assertions.assertEquals(1, machine.getCurrentState(1).activated);
+            machine.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+            Assertions.assertEquals(1, machine.getCurrentState(1).activated);
+            Assertions.assertEquals(1, machine.getCurrentState(0).activated);
+        }
+
+        @Test
+        public void unknownEvent() {
+            var machine = machine();
+            machine.processEvent(StateFlowEvent.valueOf(12345));
+            Assertions.assertEquals(List.of(StateIds.TITLE_SCREEN.id, DISCONNECTED, MUTED), machine.getConfiguration());
+        }
+
+    }
+
+    @Nested
+    public class Tick {
+
+        @Test
+        public void happyFlow() {
+            var machine = machine();
+            machine.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            machine.tick(10_000_000L);
+            Assertions.assertEquals(MUTED, machine.getCurrentStateId(2));
+            Assertions.assertEquals(StateIds.TITLE_SCREEN.id, machine.getCurrentStateId(0));
+        }
+
+    }
+
+    @Nested
+    public class Build {
+
+        @Test
+        public void noRegion() {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> StateMachineRegions.<DummyState>builder().build());
+        }
+
+        @Test
+        public void tooManyRegions() {
+            var builder = StateMachineRegions.<DummyState>builder();
+            var definition = connection();
+            for (int i = 0; i < StateMachineRegions.MAX_REGIONS; i++) {
+                builder.region(definition, CONNECTED);
+            }
+            Assertions.assertThrows(IllegalArgumentException.class, () -> builder.region(definition, CONNECTED));
+        }
+
+    }
+
+}
@@ -28,6 +28,23 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import javax.management.openmbean.TabularData;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class StateManagerTest {
@@ -122,11 +139,1573 @@ public class StateManagerTest {
 
     }
 
-    @Test
-    public void registerGameStateFlow() {
+    @Nested
+    public class Compile {
+
+        @Test
+        public void flowRegisteredAfterCompile() {
+            var state1 = new DummyState(1);
+            var state2 = new DummyState(2);
+            var manager = StateManager.withInitialState(state1);
+            manager.registerGameState(state2);
+            manager.compile();
+            manager.registerGameStateFlow(new StateFlow(state1.getStateId(), state2.getStateId(), StateFlowEvents.LOADING_COMPLETED.event));
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(state2, manager.getCurrentState());
+        }
+
+        @Test
+        public void specificBeforeAny() {
+            var state1 = new DummyState(1);
+            var state2 = new DummyState(2);
+            var state3 = new DummyState(3);
+            var manager = StateManager.withInitialState(state1);
+            manager.registerGameState(state2);
+            manager.registerGameState(state3);
+            manager.registerGameStateFlow(new StateFlow(StateIds.ANY.id, state3.getStateId(), StateFlowEvents.LOADING_COMPLETED.event));
+            manager.registerGameStateFlow(new StateFlow(state1.getStateId(), state2.getStateId(), StateFlowEvents.LOADING_COMPLETED.event));
+            manager.registerGameStateFlow(new StateFlow(state1.getStateId(), state3.getStateId(), StateFlowEvents.LOADING_COMPLETED.event));
+            manager.compile();
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(state2, manager.getCurrentState());
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(state3, manager.getCurrentState());
+        }
+
+        @Test
+        public void executionInNextState() {
+            var state1 = new DummyState(1);
+            var state2 = new DummyState(2);
+            var manager = StateManager.withInitialState(state1);
+            var executed = new int[1];
+            manager.registerGameState(state2);
+            manager.registerGameStateFlow(new StateFlow(state1.getStateId(), state2.getStateId(), StateFlowEvents.LOADING_COMPLETED.event));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(state2).execute(() -> executed[0]++));
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(1, executed[0]);
+        }
+
+        @Test
+        public void unknownEvent() {
+            var state1 = new DummyState(1);
+            var manager = StateManager.withInitialState(state1);
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(state1, manager.getCurrentState());
+        }
+
     }
 
-    @Test
-    public void getCurrentState() {
+    @Nested
+    public class Allocation {
+
+        @Test
+        public void processEventDoesNotAllocate() {
+            var state1 = new DummyState(1);
+            var state2 = new DummyState(2);
+            var manager = StateManager.withInitialState(state1);
+            var executed = new int[1];
+            manager.registerGameState(state2);
+            manager.registerGameStateFlow(new StateFlow(state1.getStateId(), state2.getStateId(), StateFlowEvents.LOADING_COMPLETED.event));
+            manager.registerGameStateFlow(new StateFlow(StateIds.ANY.id, state1.getStateId(), StateFlowEvents.OPEN_CONFIGURATION.event));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateIds.ANY).execute(() -> executed[0]++));
+            var notified = new int[2];
+            manager.addTransitionListener((from, event, to) -> notified[0]++);
+            manager.addTransitionListener((from, event, to) -> notified[1]++, List.of(StateId.valueOf(5)), List.of());
+            manager.compile();
+            var bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            Assertions.assertTrue(bean.isThreadAllocatedMemoryEnabled());
+            for (int i = 0; i < 200_000; i++) {
+                dispatch(manager);
+            }
+            long before = bean.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 20_000; i++) {
+                dispatch(manager);
+            }
+            long allocated = bean.getCurrentThreadAllocatedBytes() - before;
+            Assertions.assertEquals(0, allocated);
+            Assertions.assertEquals(220_000, executed[0]);
+            Assertions.assertEquals(440_000, notified[0]);
+            Assertions.assertEquals(0, notified[1]);
+        }
+
+        @Test
+        public void largeIdsDoNotAllocate() {
+            var manager = StateManager.withInitialState(new DummyState(100_001));
+            manager.registerGameState(new DummyState(100_002));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvent.valueOf(200_001)).goFrom(StateId.valueOf(100_001)).to(StateId.valueOf(100_002)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvent.valueOf(200_002)).goFrom(StateId.valueOf(100_002)).to(StateId.valueOf(100_001)));
+            var notified = new int[1];
+            manager.addTransitionListener((from, event, to) -> notified[0]++, List.of(StateId.valueOf(100_002)), List.of(StateFlowEvent.valueOf(200_001)));
+            manager.compile();
+            int[] events = {200_001, 200_002, 200_003};
+            // 200_003 is not used by any flow: it is not interned, the caller keeps its instance.
+            StateFlowEvent[] instances = Arrays.stream(events).mapToObj(StateFlowEvent::valueOf).toArray(StateFlowEvent[]::new);
+            var bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            for (int i = 0; i < 200_000; i++) {
+                manager.processEvent(instances[i % 3]);
+                manager.processEvents(events, 0, 3);
+            }
+            long before = bean.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 20_000; i++) {
+                manager.processEvent(instances[i % 3]);
+                manager.processEvents(events, 0, 3);
+            }
+            Assertions.assertEquals(0, bean.getCurrentThreadAllocatedBytes() - before);
+            // Only the single 200_001 events, every third iteration, match the filters: the batches have no net transition.
+            Assertions.assertEquals(73_334, notified[0]);
+        }
+
+        private void dispatch(StateManager<DummyState> manager) {
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            manager.processEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.processEvent(StateFlowEvents.EULA_ACCEPTED);
+        }
+
+    }
+
+    @Nested
+    public class EventQueue {
+
+        @Test
+        public void manyProducers() throws InterruptedException {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            var executed = new int[1];
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateIds.ANY).execute(() -> executed[0]++));
+            manager.enableEventQueue(64, EventQueuePolicy.BLOCK);
+            var producers = new ArrayList<Thread>();
+            for (int i = 0; i < 4; i++) {
+                producers.add(Thread.ofPlatform().start(() -> {
+                    for (int j = 0; j < 1_000; j++) {
+                        manager.postEvent(StateFlowEvents.LOADING_COMPLETED);
+                    }
+                }));
+            }
+            while (producers.stream().anyMatch(Thread::isAlive)) {
+                manager.processPending(16);
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            manager.drain();
+            Assertions.assertEquals(4_000, executed[0]);
+        }
+
+        @Test
+        public void drop() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.enableEventQueue(2, EventQueuePolicy.DROP);
+            Assertions.assertTrue(manager.postEvent(1));
+            Assertions.assertTrue(manager.postEvent(2));
+            Assertions.assertFalse(manager.postEvent(3));
+            Assertions.assertEquals(2, manager.drain());
+        }
+
+        @Test
+        public void growKeepsOrder() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            var processed = new ArrayList<Integer>();
+            for (int i = 1; i <= 7; i++) {
+                int value = i;
+                manager.registerGameStateFlow(StateFlow.on(StateFlowEvent.valueOf(i)).goFrom(StateIds.ANY).execute(() -> processed.add(value)));
+            }
+            manager.enableEventQueue(2, EventQueuePolicy.GROW);
+            for (int i = 1; i <= 7; i++) {
+                Assertions.assertTrue(manager.postEvent(i));
+            }
+            Assertions.assertEquals(3, manager.processPending(3));
+            Assertions.assertEquals(4, manager.drain());
+            Assertions.assertEquals(List.of(1, 2, 3, 4, 5, 6, 7), processed);
+        }
+
+        @Test
+        public void notEnabled() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            Assertions.assertThrows(IllegalStateException.class, () -> manager.postEvent(1));
+        }
+
+    }
+
+    @Nested
+    public class ProcessEvents {
+
+        @Test
+        public void onlyNetTransition() {
+            var state1 = new DummyState(1);
+            var state2 = new DummyState(2);
+            var state3 = new DummyState(3);
+            var manager = StateManager.withInitialState(state1);
+            manager.registerGameState(state2);
+            manager.registerGameState(state3);
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(state1).to(state2));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(state2).to(state3));
+            int[] events = {0, StateFlowEvents.LOADING_COMPLETED.event.value(), StateFlowEvents.OPEN_CONFIGURATION.event.value()};
+            manager.processEvents(events, 1, 2);
+            Assertions.assertEquals(state3, manager.getCurrentState());
+            Assertions.assertEquals(0, state2.activated);
+            Assertions.assertEquals(1, state3.activated);
+        }
+
+        @Test
+        public void roundTrip() {
+            var state1 = new DummyState(1);
+            var state2 = new DummyState(2);
+            var manager = StateManager.withInitialState(state1);
+            manager.registerGameState(state2);
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(state1).to(state2));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(state2).to(state1));
+            manager.processEvents(IntBuffer.wrap(new int[]{StateFlowEvents.OPEN_CONFIGURATION.event.value(), StateFlowEvents.CLOSE_CONFIGURATION.event.value()}));
+            Assertions.assertEquals(state1, manager.getCurrentState());
+            Assertions.assertEquals(1, state1.activated);
+            Assertions.assertEquals(0, state2.activated);
+        }
+
+        @Test
+        public void executionSeesIntermediateState() {
+            var state1 = new DummyState(1);
+            var state2 = new DummyState(2);
+            var state3 = new DummyState(3);
+            var manager = StateManager.withInitialState(state1);
+            var seen = new ArrayList<State>();
+            manager.registerGameState(state2);
+            manager.registerGameState(state3);
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(state1).to(state2));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(state2).execute(() -> seen.add(manager.getCurrentState())));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(state2).to(state3));
+            manager.processEvents(new int[]{StateFlowEvents.LOADING_COMPLETED.event.value(), StateFlowEvents.OPEN_CONFIGURATION.event.value()}, 0, 2);
+            Assertions.assertEquals(List.of(state2), seen);
+            Assertions.assertEquals(state3, manager.getCurrentState());
+        }
+
+        @Test
+        public void invalidRange() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            Assertions.assertThrows(IndexOutOfBoundsException.class, () -> manager.processEvents(new int[2], 1, 2));
+        }
+
+    }
+
+    @Nested
+    public class Hierarchy {
+
+        private final DummyState title = new DummyState(StateIds.TITLE_SCREEN.id);
+
+        private final DummyState main = new DummyState(StateIds.MAIN_SCREEN.id);
+
+        private final DummyState configuration = new DummyState(StateIds.CONFIGURATION_SCREEN.id);
+
+        private final DummyState eula = new DummyState(StateIds.EULA_SCREEN.id);
+
+        private StateManager<DummyState> manager() {
+            var manager = StateManager.withInitialState(this.title);
+            manager.registerGameState(this.main);
+            manager.registerGameState(this.configuration);
+            manager.registerGameState(this.eula);
+            manager.registerParentState(StateIds.CONFIGURATION_SCREEN.id, StateIds.MAIN_SCREEN.id);
+            manager.registerParentState(StateIds.EULA_SCREEN.id, StateIds.MAIN_SCREEN.id);
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateIds.TITLE_SCREEN).to(StateIds.CONFIGURATION_SCREEN));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_EULA).goFrom(StateIds.MAIN_SCREEN).to(StateIds.EULA_SCREEN));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateIds.MAIN_SCREEN).to(StateIds.TITLE_SCREEN));
+            return manager;
+        }
+
+        @Test
+        public void enterChildActivatesParent() {
+            var manager = this.manager();
+            manager.processEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            Assertions.assertEquals(this.configuration, manager.getCurrentState());
+            Assertions.assertEquals(1, this.main.activated);
+            Assertions.assertEquals(1, this.configuration.activated);
+        }
+
+        @Test
+        public void eventBubblesToParent() {
+            var manager = this.manager();
+            manager.processEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.processEvent(StateFlowEvents.OPEN_EULA);
+            Assertions.assertEquals(this.eula, manager.getCurrentState());
+            Assertions.assertEquals(1, this.main.activated);
+            Assertions.assertEquals(1, this.main.deactivated);
+            Assertions.assertEquals(2, this.configuration.deactivated);
+        }
+
+        @Test
+        public void leaveChildDeactivatesParent() {
+            var manager = this.manager();
+            manager.processEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(this.title, manager.getCurrentState());
+            Assertions.assertEquals(2, this.configuration.deactivated);
+            Assertions.assertEquals(2, this.main.deactivated);
+            Assertions.assertEquals(1, this.title.deactivated);
+        }
+
+        @Test
+        public void batchWalksHierarchy() {
+            var manager = this.manager();
+            manager.processEvents(new int[]{StateFlowEvents.OPEN_CONFIGURATION.event.value(), StateFlowEvents.OPEN_EULA.event.value()}, 0, 2);
+            Assertions.assertEquals(this.eula, manager.getCurrentState());
+            Assertions.assertEquals(1, this.main.activated);
+            Assertions.assertEquals(0, this.configuration.activated);
+        }
+
+        @Test
+        public void initialStateParentsActivated() {
+            var root = new DummyState(StateIds.GAME_OVER.id);
+            var manager = StateManager.withInitialState(this.configuration);
+            manager.registerGameState(this.main);
+            manager.registerGameState(root);
+            manager.registerParentState(StateIds.CONFIGURATION_SCREEN.id, StateIds.MAIN_SCREEN.id);
+            manager.registerParentState(StateIds.MAIN_SCREEN.id, StateIds.GAME_OVER.id);
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateIds.CONFIGURATION_SCREEN).to(StateIds.TITLE_SCREEN));
+            manager.registerGameState(this.title);
+            // Registered states are deactivated once when registered.
+            this.main.deactivated = 0;
+            root.deactivated = 0;
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(this.title, manager.getCurrentState());
+            Assertions.assertEquals(1, this.main.activated);
+            Assertions.assertEquals(this.main.activated, this.main.deactivated);
+            Assertions.assertEquals(1, root.activated);
+            Assertions.assertEquals(root.activated, root.deactivated);
+        }
+
+        @Test
+        public void cycle() {
+            var manager = this.manager();
+            Assertions.assertThrows(IllegalArgumentException.class, () -> manager.registerParentState(StateIds.MAIN_SCREEN.id, StateIds.EULA_SCREEN.id));
+        }
+
+        @Test
+        public void notRegistered() {
+            var manager = this.manager();
+            Assertions.assertThrows(IllegalArgumentException.class, () -> manager.registerParentState(StateIds.GAME_OVER.id, StateIds.MAIN_SCREEN.id));
+        }
+
+    }
+
+    @Nested
+    public class Prebuild {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        private final List<Integer> built = new ArrayList<>();
+
+        private StateManager.StateBuilder<DummyState> builder(int id) {
+            return () -> {
+                this.built.add(id);
+                return new DummyState(id);
+            };
+        }
+
+        private StateManager<DummyState> manager() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(StateId.valueOf(2), this.builder(2));
+            manager.registerGameState(StateId.valueOf(3), this.builder(3));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(3)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateId.valueOf(3)).to(StateId.valueOf(2)));
+            return manager;
+        }
+
+        @Test
+        public void reachableFirst() {
+            var manager = this.manager();
+            manager.enablePrebuild(this.tasks::add);
+            Assertions.assertEquals(2, this.tasks.size());
+            this.tasks.get(0).run();
+            Assertions.assertEquals(List.of(3), this.built);
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(List.of(3), this.built);
+            Assertions.assertEquals(StateId.valueOf(3), manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void notStartedBuiltOnTransition() {
+            var manager = this.manager();
+            manager.enablePrebuild(this.tasks::add);
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(List.of(3), this.built);
+            this.tasks.forEach(Runnable::run);
+            Assertions.assertEquals(List.of(3, 2), this.built);
+            manager.processEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            Assertions.assertEquals(List.of(3, 2), this.built);
+            Assertions.assertEquals(StateId.valueOf(2), manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void registeredAfterEnable() {
+            var manager = this.manager();
+            manager.enablePrebuild(this.tasks::add);
+            manager.registerGameState(StateId.valueOf(4), this.builder(4));
+            Assertions.assertEquals(3, this.tasks.size());
+        }
+
+        @Test
+        public void transitionDoesNotAllocate() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameState(StateId.valueOf(3), this.builder(3));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateId.valueOf(2)).to(StateId.valueOf(1)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateId.valueOf(2)).to(StateId.valueOf(3)));
+            manager.enablePrebuild(this.tasks::add);
+            var bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            for (int i = 0; i < 200_000; i++) {
+                manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+                manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            }
+            long before = bean.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 20_000; i++) {
+                manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+                manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            }
+            Assertions.assertEquals(0, bean.getCurrentThreadAllocatedBytes() - before);
+            Assertions.assertEquals(1, this.tasks.size());
+        }
+
+    }
+
+    @Nested
+    public class Async {
+
+        private final class LoadingState extends DummyState implements AsyncState {
+
+            private CompletableFuture<Void> activation = CompletableFuture.completedFuture(null);
+
+            private final boolean overlap;
+
+            private LoadingState(int id, boolean overlap) {
+                super(id);
+                this.overlap = overlap;
+            }
+
+            @Override
+            public CompletionStage<Void> activateAsync() {
+                this.activation = new CompletableFuture<>();
+                return this.activation;
+            }
+
+            @Override
+            public CompletionStage<Void> deactivateAsync() {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public boolean canOverlap() {
+                return this.overlap;
+            }
+
+            @Override
+            public void activate() {
+                throw new AssertionError("Blocking activation.");
+            }
+
+            @Override
+            public void deactivate() {
+                throw new AssertionError("Blocking deactivation.");
+            }
+        }
+
+        @Test
+        public void eventsDeferredDuringTransition() {
+            var title = new DummyState(1);
+            var loading = new LoadingState(2, false);
+            var main = new DummyState(3);
+            var manager = StateManager.withInitialState(title);
+            manager.registerGameState(loading);
+            manager.registerGameState(main);
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_SUCCESSFUL).goFrom(title).to(loading));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(loading).to(main));
+            manager.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+            Assertions.assertTrue(manager.isInTransition());
+            Assertions.assertEquals(loading, manager.getCurrentState());
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(loading, manager.getCurrentState());
+            var transition = manager.getTransition();
+            loading.activation.complete(null);
+            Assertions.assertFalse(transition.isDone());
+            Assertions.assertFalse(manager.isInTransition());
+            Assertions.assertEquals(StateId.valueOf(2), transition.join());
+            manager.processPending(1);
+            Assertions.assertEquals(main, manager.getCurrentState());
+            Assertions.assertEquals(1, main.activated);
+        }
+
+        @Test
+        public void failedTransition() {
+            var title = new DummyState(1);
+            var loading = new LoadingState(2, true);
+            var manager = StateManager.withInitialState(title);
+            manager.registerGameState(loading);
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_SUCCESSFUL).goFrom(title).to(loading));
+            manager.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+            loading.activation.completeExceptionally(new IllegalStateException());
+            Assertions.assertThrows(RuntimeException.class, () -> manager.processEvent(StateFlowEvents.LOADING_COMPLETED));
+            Assertions.assertFalse(manager.isInTransition());
+        }
+
+        @Test
+        public void stepsRunOnManagerThread() throws InterruptedException {
+            var title = new DummyState(1);
+            var loading = new LoadingState(2, false);
+            var threads = new ArrayList<Thread>();
+            var level = new DummyState(3) {
+                @Override
+                public void activate() {
+                    super.activate();
+                    threads.add(Thread.currentThread());
+                }
+            };
+            var manager = StateManager.withInitialState(title);
+            manager.registerGameState(loading);
+            manager.registerGameState(level);
+            manager.registerParentState(level.getStateId(), loading.getStateId());
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_SUCCESSFUL).goFrom(title).to(level));
+            manager.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+            var loader = new Thread(() -> loading.activation.complete(null), "asset-loader");
+            loader.start();
+            loader.join();
+            Assertions.assertEquals(0, level.activated);
+            Assertions.assertTrue(manager.getTransition().complete(StateId.valueOf(1)));
+            Assertions.assertFalse(manager.isInTransition());
+            Assertions.assertEquals(List.of(Thread.currentThread()), threads);
+            Assertions.assertEquals(StateId.valueOf(3), manager.getTransition().join());
+        }
+
+        @Test
+        public void lazyState() {
+            var title = new DummyState(1);
+            var loading = new LoadingState(2, false);
+            var manager = StateManager.withInitialState(title);
+            manager.registerGameState(loading.getStateId(), () -> loading);
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_SUCCESSFUL).goFrom(title).to(loading));
+            manager.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+            Assertions.assertTrue(manager.isInTransition());
+            loading.activation.complete(null);
+            Assertions.assertFalse(manager.isInTransition());
+            Assertions.assertEquals(loading, manager.getCurrentState());
+        }
+
+        @Test
+        public void batch() {
+            var title = new DummyState(1);
+            var loading = new LoadingState(2, false);
+            var main = new DummyState(3);
+            var manager = StateManager.withInitialState(title);
+            manager.registerGameState(loading);
+            manager.registerGameState(main);
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_SUCCESSFUL).goFrom(title).to(loading));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(loading).to(main));
+            manager.processEvents(new int[]{StateFlowEvents.AUTHENTICATION_SUCCESSFUL.event.value(), StateFlowEvents.LOADING_COMPLETED.event.value()}, 0, 2);
+            Assertions.assertTrue(manager.isInTransition());
+            Assertions.assertEquals(loading, manager.getCurrentState());
+            loading.activation.complete(null);
+            Assertions.assertFalse(manager.isInTransition());
+            manager.processPending(1);
+            Assertions.assertEquals(main, manager.getCurrentState());
+        }
+
+        @Test
+        public void restore() {
+            var source = StateManager.withInitialState(new DummyState(1));
+            source.registerGameState(new DummyState(2));
+            source.registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_SUCCESSFUL).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            source.processEvent(StateFlowEvents.AUTHENTICATION_SUCCESSFUL);
+            var loading = new LoadingState(2, false);
+            var target = StateManager.withInitialState(new DummyState(1));
+            target.registerGameState(loading);
+            target.registerGameStateFlow(StateFlow.on(StateFlowEvents.AUTHENTICATION_SUCCESSFUL).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            target.restore(source.snapshot());
+            Assertions.assertTrue(target.isInTransition());
+            loading.activation.complete(null);
+            Assertions.assertFalse(target.isInTransition());
+            Assertions.assertEquals(loading, target.getCurrentState());
+        }
+
+    }
+
+    @Nested
+    public class Eviction {
+
+        private final class HeavyState extends DummyState implements EvictableState {
+
+            private boolean released;
+
+            private HeavyState(int id) {
+                super(id);
+            }
+
+            @Override
+            public long getMemoryCost() {
+                return 10;
+            }
+
+            @Override
+            public void release() {
+                this.released = true;
+            }
+        }
+
+        private final List<HeavyState> built = new ArrayList<>();
+
+        private StateManager.StateBuilder<DummyState> builder(int id) {
+            return () -> {
+                var state = new HeavyState(id);
+                this.built.add(state);
+                return state;
+            };
+        }
+
+        private StateManager<DummyState> manager() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(StateId.valueOf(2), this.builder(2));
+            manager.registerGameState(StateId.valueOf(3), this.builder(3));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateIds.ANY.id).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateIds.ANY.id).to(StateId.valueOf(3)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateIds.ANY.id).to(StateId.valueOf(1)));
+            return manager;
+        }
+
+        @Test
+        public void happyFlow() {
+            var manager = this.manager();
+            manager.enableEviction(15);
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.processEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertTrue(this.built.get(0).released);
+            Assertions.assertFalse(this.built.get(1).released);
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(3, this.built.size());
+            Assertions.assertSame(this.built.get(2), manager.getCurrentState());
+        }
+
+        @Test
+        public void activeNotEvicted() {
+            var manager = this.manager();
+            manager.enableEviction(0);
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertFalse(this.built.get(0).released);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertTrue(this.built.get(0).released);
+        }
+
+        @Test
+        public void disabled() {
+            var manager = this.manager();
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.processEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertFalse(this.built.get(0).released);
+            Assertions.assertFalse(this.built.get(1).released);
+        }
+
+        @Test
+        public void evictedPrebuiltWhenReachable() {
+            var tasks = new ArrayList<Runnable>();
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(StateId.valueOf(2), this.builder(2));
+            manager.registerGameState(StateId.valueOf(3), this.builder(3));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateId.valueOf(2)).to(StateId.valueOf(3)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateId.valueOf(3)).to(StateId.valueOf(1)));
+            manager.enablePrebuild(tasks::add);
+            manager.enableEviction(0);
+            tasks.forEach(Runnable::run);
+            tasks.clear();
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.processEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            Assertions.assertTrue(this.built.get(0).released);
+            Assertions.assertTrue(tasks.isEmpty());
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertTrue(this.built.get(1).released);
+            Assertions.assertEquals(1, tasks.size());
+            tasks.forEach(Runnable::run);
+            Assertions.assertEquals(3, this.built.size());
+            Assertions.assertEquals(StateId.valueOf(2), this.built.get(2).getStateId());
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertSame(this.built.get(2), manager.getCurrentState());
+        }
+
+        @Test
+        public void negativeBudget() {
+            var manager = this.manager();
+            Assertions.assertThrows(IllegalArgumentException.class, () -> manager.enableEviction(-1));
+        }
+
     }
-}
\ No newline at end of file
+
+    @Nested
+    public class Guard {
+
+        private boolean accepted;
+
+        private StateManager<DummyState> manager() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameState(new DummyState(3));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).when(() -> this.accepted).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(3)));
+            return manager;
+        }
+
+        @Test
+        public void happyFlow() {
+            this.accepted = true;
+            var manager = this.manager();
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(StateId.valueOf(2), manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void fallback() {
+            var manager = this.manager();
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(StateId.valueOf(3), manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void noneAccepted() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).when(v -> v == 2).to(StateId.valueOf(2)));
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(StateId.valueOf(1), manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void fallThroughAny() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameState(new DummyState(3));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).when(() -> false).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateIds.ANY.id).to(StateId.valueOf(3)));
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(StateId.valueOf(3), manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void unguardedShadowsLater() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameState(new DummyState(3));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(3)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).when(() -> true).to(StateId.valueOf(2)));
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(StateId.valueOf(3), manager.getCurrentState().getStateId());
+        }
+
+    }
+
+    @Nested
+    public class Metrics {
+
+        private StateManager<DummyState> manager() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateId.valueOf(2)).to(StateId.valueOf(1)));
+            return manager;
+        }
+
+        @Test
+        public void happyFlow() {
+            var manager = this.manager();
+            var metrics = manager.enableMetrics();
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.processEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(1, metrics.getTransitionCount(StateId.valueOf(1), StateFlowEvents.LOADING_COMPLETED.event));
+            Assertions.assertEquals(1, metrics.getTransitionCount(StateId.valueOf(2), StateFlowEvents.OPEN_CONFIGURATION.event));
+            Assertions.assertEquals(1, metrics.getUnhandledCount(StateFlowEvents.LOADING_COMPLETED.event));
+            Assertions.assertEquals(1, metrics.getUnhandledCount(StateFlowEvents.CLOSE_CONFIGURATION.event));
+            Assertions.assertEquals(2, metrics.getActivateHistogram().getCount());
+            Assertions.assertEquals(2, metrics.getDeactivateHistogram().getCount());
+        }
+
+        @Test
+        public void keptAfterCompile() {
+            var manager = this.manager();
+            var metrics = manager.enableMetrics();
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.registerGameState(new DummyState(3));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateId.valueOf(2)).to(StateId.valueOf(3)));
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(1, metrics.getTransitionCount(StateId.valueOf(1), StateFlowEvents.LOADING_COMPLETED.event));
+            Assertions.assertEquals(1, metrics.getTransitionCount(StateId.valueOf(2), StateFlowEvents.CLOSE_CONFIGURATION.event));
+            Assertions.assertEquals(Map.of("1:3", 1L, "2:6", 1L), metrics.getTransitionCounts());
+        }
+
+        @Test
+        public void build() {
+            var manager = this.manager();
+            manager.registerGameState(StateId.valueOf(3), () -> new DummyState(3));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateId.valueOf(1)).to(StateId.valueOf(3)));
+            var metrics = manager.enableMetrics();
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(1, metrics.getBuildHistogram().getCount());
+        }
+
+        @Test
+        public void disabled() {
+            var manager = this.manager();
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertNull(manager.getMetrics());
+        }
+
+        @Test
+        public void mbean() throws Exception {
+            var manager = this.manager();
+            var metrics = manager.enableMetrics();
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            var name = metrics.registerMBean("be.yildizgames:type=StateMachine,name=test");
+            var server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                var latency = (TabularData) server.getAttribute(name, "ActivateLatency");
+                Assertions.assertNotNull(latency);
+            } finally {
+                server.unregisterMBean(name);
+            }
+        }
+
+    }
+
+    @Nested
+    public class Trace {
+
+        @Test
+        public void happyFlow() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            var entries = manager.getTrace().snapshot();
+            Assertions.assertEquals(2, entries.size());
+            Assertions.assertEquals(new TransitionTrace.Entry(entries.get(0).timestamp(), 1, 3, 2), entries.get(0));
+            Assertions.assertEquals(new TransitionTrace.Entry(entries.get(1).timestamp(), 2, 6, 2), entries.get(1));
+        }
+
+        @Test
+        public void batch() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.processEvents(new int[]{3, 6}, 0, 2);
+            Assertions.assertEquals(List.of(2, 2), manager.getTrace().snapshot().stream().map(TransitionTrace.Entry::to).toList());
+        }
+
+        @Test
+        public void disabled() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.disableTrace();
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertNull(manager.getTrace());
+        }
+
+    }
+
+    @Nested
+    public class Snapshot {
+
+        private final DummyState one = new DummyState(1);
+
+        private final DummyState two = new DummyState(2);
+
+        private final DummyState three = new DummyState(3);
+
+        private StateManager<DummyState> manager(DummyState... states) {
+            var manager = StateManager.withInitialState(states[0]);
+            for (int i = 1; i < states.length; i++) {
+                manager.registerGameState(states[i]);
+            }
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateId.valueOf(2)).to(StateId.valueOf(3)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateId.valueOf(3)).to(StateId.valueOf(1)));
+            return manager;
+        }
+
+        @Test
+        public void happyFlow() {
+            var source = this.manager(new DummyState(1), new DummyState(2), new DummyState(3));
+            source.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            source.processEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            var target = this.manager(this.one, this.two, this.three);
+            target.restore(source.snapshot());
+            Assertions.assertEquals(StateId.valueOf(3), target.getCurrentState().getStateId());
+            Assertions.assertEquals(1, this.one.deactivated);
+            Assertions.assertEquals(0, this.two.activated);
+            Assertions.assertEquals(1, this.three.activated);
+        }
+
+        @Test
+        public void queuedEvents() {
+            var source = this.manager(new DummyState(1), new DummyState(2), new DummyState(3));
+            source.enableEventQueue(4, EventQueuePolicy.BLOCK);
+            source.postEvent(StateFlowEvents.LOADING_COMPLETED);
+            source.postEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            var target = this.manager(this.one, this.two, this.three);
+            target.enableEventQueue(4, EventQueuePolicy.BLOCK);
+            target.restore(source.snapshot());
+            Assertions.assertEquals(2, source.drain());
+            Assertions.assertEquals(2, target.drain());
+            Assertions.assertEquals(StateId.valueOf(3), target.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void queueNotEnabled() {
+            var source = this.manager(new DummyState(1), new DummyState(2), new DummyState(3));
+            source.enableEventQueue(4, EventQueuePolicy.BLOCK);
+            source.postEvent(StateFlowEvents.LOADING_COMPLETED);
+            var target = this.manager(this.one, this.two, this.three);
+            Assertions.assertThrows(IllegalStateException.class, () -> target.restore(source.snapshot()));
+        }
+
+        @Test
+        public void unknownState() {
+            var source = this.manager(new DummyState(1), new DummyState(2), new DummyState(3));
+            source.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            var target = StateManager.withInitialState(this.one);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> target.restore(source.snapshot()));
+        }
+
+        @Test
+        public void invalid() {
+            var manager = this.manager(this.one, this.two, this.three);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> manager.restore(new byte[]{1, 2, 3}));
+        }
+
+        @Test
+        public void replay() throws Exception {
+            var source = this.manager(new DummyState(1), new DummyState(2), new DummyState(3));
+            var log = new EventLog();
+            source.enableEventLog(log);
+            source.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            source.processEvents(new int[]{5, 6, 3}, 0, 3);
+            var output = new ByteArrayOutputStream();
+            log.write(output);
+            var target = this.manager(this.one, this.two, this.three);
+            EventLog.read(new ByteArrayInputStream(output.toByteArray())).replay(target);
+            Assertions.assertEquals(source.getCurrentState().getStateId(), target.getCurrentState().getStateId());
+            Assertions.assertEquals(2, this.two.activated);
+        }
+
+        @Test
+        public void replayTimeout() throws Exception {
+            var source = this.timed();
+            var log = new EventLog();
+            source.enableEventLog(log);
+            source.tick(0);
+            source.tick(6_000_000_000L);
+            Assertions.assertEquals(StateId.valueOf(3), source.getCurrentState().getStateId());
+            var output = new ByteArrayOutputStream();
+            log.write(output);
+            var target = this.timed();
+            EventLog.read(new ByteArrayInputStream(output.toByteArray())).replay(target);
+            Assertions.assertEquals(StateId.valueOf(3), target.getCurrentState().getStateId());
+        }
+
+        private StateManager<DummyState> timed() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameState(new DummyState(3));
+            manager.registerGameStateFlow(StateFlow.after(Duration.ofSeconds(30)).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.after(Duration.ofSeconds(5)).goFrom(StateId.valueOf(1)).to(StateId.valueOf(3)));
+            return manager;
+        }
+
+        @Test
+        public void truncatedLog() throws Exception {
+            var log = new EventLog();
+            log.add(3);
+            var output = new ByteArrayOutputStream();
+            log.write(output);
+            byte[] bytes = output.toByteArray();
+            bytes[11] = 127;
+            Assertions.assertThrows(IOException.class, () -> EventLog.read(new ByteArrayInputStream(bytes)));
+            bytes[8] = -1;
+            Assertions.assertThrows(IOException.class, () -> EventLog.read(new ByteArrayInputStream(bytes)));
+        }
+
+    }
+
+    @Nested
+    public class Validate {
+
+        @Test
+        public void happyFlow() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateId.valueOf(2)).to(StateId.valueOf(1)));
+            var report = manager.validate();
+            Assertions.assertTrue(report.isValid());
+            Assertions.assertEquals(1, report.distance(StateId.valueOf(1), StateId.valueOf(2)));
+            Assertions.assertEquals(0, report.distance(StateId.valueOf(1), StateId.valueOf(1)));
+        }
+
+        @Test
+        public void problems() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameState(new DummyState(3));
+            manager.registerGameState(new DummyState(4));
+            var toTwo = StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2));
+            var shadowed = StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(3));
+            var fromUnreachable = StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(3)).to(StateId.valueOf(1));
+            var dangling = StateFlow.on(StateFlowEvents.CLOSE_APP).goFrom(StateId.valueOf(1)).to(StateId.valueOf(9));
+            var any = StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateIds.ANY).to(StateId.valueOf(1));
+            var conflict = StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateId.valueOf(4)).to(StateId.valueOf(2));
+            manager.registerGameStateFlow(toTwo);
+            manager.registerGameStateFlow(shadowed);
+            manager.registerGameStateFlow(fromUnreachable);
+            manager.registerGameStateFlow(dangling);
+            manager.registerGameStateFlow(any);
+            manager.registerGameStateFlow(conflict);
+            var report = manager.validate();
+            Assertions.assertFalse(report.isValid());
+            Assertions.assertEquals(List.of(StateId.valueOf(3), StateId.valueOf(4)), report.getUnreachableStates());
+            Assertions.assertEquals(List.of(shadowed, fromUnreachable, conflict), report.getDeadFlows().stream().sorted((a, b) -> Integer.compare(a.state.value(), b.state.value())).toList());
+            Assertions.assertEquals(List.of(dangling), report.getDanglingFlows());
+            Assertions.assertEquals(List.of(conflict), report.getAnyConflicts());
+            Assertions.assertTrue(report.getSinkStates().isEmpty());
+            Assertions.assertFalse(report.isReachable(StateId.valueOf(1), StateId.valueOf(4)));
+        }
+
+        @Test
+        public void sink() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            Assertions.assertEquals(List.of(StateId.valueOf(2)), manager.validate().getSinkStates());
+        }
+
+        @Test
+        public void largeGraph() {
+            var builder = StateMachineDefinition.<DummyState>builder();
+            for (int i = 0; i < 10_000; i++) {
+                builder.registerGameState(new DummyState(i));
+            }
+            for (int i = 0; i < 10_000; i++) {
+                builder.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(i)).to(StateId.valueOf((i + 1) % 10_000)));
+                builder.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateId.valueOf(i)).to(StateId.valueOf((i * 7) % 10_000)));
+            }
+            var report = builder.validate(StateId.valueOf(0));
+            Assertions.assertTrue(report.getUnreachableStates().isEmpty());
+            Assertions.assertTrue(report.isReachable(StateId.valueOf(1), StateId.valueOf(0)));
+        }
+
+    }
+
+    @Nested
+    public class Coalescing {
+
+        private final DummyState one = new DummyState(1);
+
+        private final DummyState two = new DummyState(2);
+
+        private final List<Integer> executed = new ArrayList<>();
+
+        private StateManager<DummyState> manager() {
+            var manager = StateManager.withInitialState(this.one);
+            manager.registerGameState(this.two);
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateId.valueOf(2)).to(StateId.valueOf(1)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateIds.ANY).execute(() -> this.executed.add(manager.getCurrentState().getStateId().value())));
+            manager.enableEventQueue(16, EventQueuePolicy.BLOCK);
+            return manager;
+        }
+
+        @Test
+        public void dropDuplicates() {
+            var manager = this.manager();
+            manager.setCoalescingPolicy(StateFlowEvents.LOADING_COMPLETED, CoalescingPolicy.DROP_DUPLICATES);
+            manager.postEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.postEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.postEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(3, manager.drain());
+            Assertions.assertEquals(List.of(1), this.executed);
+            manager.postEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.drain();
+            Assertions.assertEquals(List.of(1, 2), this.executed);
+        }
+
+        @Test
+        public void keepLast() {
+            var manager = this.manager();
+            manager.setCoalescingPolicy(StateFlowEvents.LOADING_COMPLETED, CoalescingPolicy.KEEP_LAST);
+            manager.postEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.postEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.postEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.drain();
+            Assertions.assertEquals(List.of(2), this.executed);
+        }
+
+        @Test
+        public void collapseRoundTrip() {
+            var manager = this.manager();
+            manager.setCoalescingPolicy(StateFlowEvents.OPEN_CONFIGURATION, CoalescingPolicy.COLLAPSE_ROUND_TRIP);
+            manager.postEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.postEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            manager.postEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.postEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            manager.postEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.drain();
+            Assertions.assertEquals(StateId.valueOf(2), manager.getCurrentState().getStateId());
+            Assertions.assertEquals(1, this.two.activated);
+            Assertions.assertEquals(1, this.one.deactivated);
+        }
+
+        @Test
+        public void noCollapseThroughExecution() {
+            var manager = this.manager();
+            manager.setCoalescingPolicy(StateFlowEvents.OPEN_CONFIGURATION, CoalescingPolicy.COLLAPSE_ROUND_TRIP);
+            manager.postEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.postEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.postEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            manager.drain();
+            Assertions.assertEquals(List.of(2), this.executed);
+            Assertions.assertEquals(1, this.two.activated);
+        }
+
+        @Test
+        public void noCollapseThroughGuard() {
+            var evaluated = new int[1];
+            var manager = StateManager.withInitialState(this.one);
+            manager.registerGameState(this.two);
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateId.valueOf(2)).when(() -> evaluated[0]++ > 0).to(StateId.valueOf(1)));
+            manager.enableEventQueue(16, EventQueuePolicy.BLOCK);
+            manager.setCoalescingPolicy(StateFlowEvents.OPEN_CONFIGURATION, CoalescingPolicy.COLLAPSE_ROUND_TRIP);
+            manager.postEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.postEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            manager.postEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.postEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            manager.drain();
+            Assertions.assertEquals(2, evaluated[0]);
+            Assertions.assertEquals(StateId.valueOf(1), manager.getCurrentState().getStateId());
+            Assertions.assertEquals(1, this.two.activated);
+        }
+
+        @Test
+        public void none() {
+            var manager = this.manager();
+            manager.setCoalescingPolicy(StateFlowEvents.LOADING_COMPLETED, CoalescingPolicy.NONE);
+            manager.postEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.postEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.drain();
+            Assertions.assertEquals(List.of(1, 1), this.executed);
+        }
+
+    }
+
+    @Nested
+    public class FlightRecorder {
+
+        @Test
+        public void happyFlow() throws Exception {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(StateId.valueOf(2), () -> new DummyState(2));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(2)).execute(() -> {}));
+            var file = Files.createTempFile("statemachine", ".jfr");
+            try (var recording = new Recording()) {
+                recording.enable("be.yildizgames.statemachine.Transition").withoutThreshold();
+                recording.enable("be.yildizgames.statemachine.StateBuild").withoutThreshold();
+                recording.enable("be.yildizgames.statemachine.Execution").withoutThreshold();
+                recording.start();
+                manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+                recording.stop();
+                recording.dump(file);
+            }
+            try {
+                var events = RecordingFile.readAllEvents(file);
+                var transition = events.stream().filter(e -> e.getEventType().getName().equals("be.yildizgames.statemachine.Transition")).findFirst().orElseThrow();
+                Assertions.assertEquals(1, transition.getInt("from"));
+                Assertions.assertEquals(2, transition.getInt("to"));
+                Assertions.assertEquals(3, transition.getInt("event"));
+                Assertions.assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("be.yildizgames.statemachine.StateBuild")));
+                Assertions.assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("be.yildizgames.statemachine.Execution")));
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        @Test
+        public void dropped() throws Exception {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.enableEventQueue(2, EventQueuePolicy.DROP);
+            var file = Files.createTempFile("statemachine", ".jfr");
+            try (var recording = new Recording()) {
+                recording.enable("be.yildizgames.statemachine.Dropped");
+                recording.start();
+                manager.postEvent(1);
+                manager.postEvent(2);
+                manager.postEvent(3);
+                recording.stop();
+                recording.dump(file);
+            }
+            try {
+                var dropped = RecordingFile.readAllEvents(file).stream()
+                        .filter(e -> e.getEventType().getName().equals("be.yildizgames.statemachine.Dropped"))
+                        .toList();
+                Assertions.assertEquals(1, dropped.size());
+                Assertions.assertEquals(3, dropped.get(0).getInt("event"));
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+    }
+
+    @Test
+    public void registerGameStateFlow() {
+    }
+
+    @Test
+    public void getCurrentState() {
+    }
+
+    @Nested
+    public class Timer {
+
+        private StateManager<DummyState> manager() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameState(new DummyState(3));
+            manager.registerGameStateFlow(StateFlow.after(Duration.ofMillis(100)).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(3)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(3)).to(StateId.valueOf(1)));
+            return manager;
+        }
+
+        @Test
+        public void happyFlow() {
+            var manager = this.manager();
+            manager.tick(0);
+            manager.tick(99_000_000L);
+            Assertions.assertEquals(StateId.valueOf(1), manager.getCurrentState().getStateId());
+            manager.tick(1_000_000L);
+            Assertions.assertEquals(StateId.valueOf(2), manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void cancelledWhenLeft() {
+            var manager = this.manager();
+            manager.tick(50_000_000L);
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.tick(200_000_000L);
+            Assertions.assertEquals(StateId.valueOf(3), manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void restartedWhenEntered() {
+            var manager = this.manager();
+            manager.tick(0);
+            manager.tick(60_000_000L);
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.tick(60_000_000L);
+            Assertions.assertEquals(StateId.valueOf(1), manager.getCurrentState().getStateId());
+            manager.tick(40_000_000L);
+            Assertions.assertEquals(StateId.valueOf(2), manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void inherited() {
+            var manager = this.manager();
+            manager.registerGameStateFlow(StateFlow.after(Duration.ofMillis(10)).goFrom(StateIds.ANY.id).to(StateId.valueOf(2)));
+            manager.tick(0);
+            manager.tick(10_000_000L);
+            Assertions.assertEquals(StateId.valueOf(1), manager.getCurrentState().getStateId());
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.tick(10_000_000L);
+            Assertions.assertEquals(StateId.valueOf(2), manager.getCurrentState().getStateId());
+        }
+
+        private StateManager<DummyState> twoDelays(Duration first, int firstTarget, Duration second, int secondTarget) {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameState(new DummyState(3));
+            manager.registerGameStateFlow(StateFlow.after(first).goFrom(StateId.valueOf(1)).to(StateId.valueOf(firstTarget)));
+            manager.registerGameStateFlow(StateFlow.after(second).goFrom(StateId.valueOf(1)).to(StateId.valueOf(secondTarget)));
+            manager.tick(0);
+            return manager;
+        }
+
+        @Test
+        public void shorterDelayRegisteredLast() {
+            var manager = this.twoDelays(Duration.ofSeconds(30), 2, Duration.ofSeconds(5), 3);
+            manager.tick(4_000_000_000L);
+            Assertions.assertEquals(StateId.valueOf(1), manager.getCurrentState().getStateId());
+            manager.tick(2_000_000_000L);
+            Assertions.assertEquals(StateId.valueOf(3), manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void shorterDelayRegisteredFirst() {
+            var manager = this.twoDelays(Duration.ofSeconds(5), 3, Duration.ofSeconds(30), 2);
+            manager.tick(4_000_000_000L);
+            Assertions.assertEquals(StateId.valueOf(1), manager.getCurrentState().getStateId());
+            manager.tick(2_000_000_000L);
+            Assertions.assertEquals(StateId.valueOf(3), manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void rejectedGuardWaitsForNextDelay() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameState(new DummyState(3));
+            manager.registerGameStateFlow(StateFlow.after(Duration.ofMillis(10)).goFrom(StateId.valueOf(1)).when(() -> false).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.after(Duration.ofMillis(50)).goFrom(StateId.valueOf(1)).to(StateId.valueOf(3)));
+            manager.tick(0);
+            manager.tick(10_000_000L);
+            Assertions.assertEquals(StateId.valueOf(1), manager.getCurrentState().getStateId());
+            manager.tick(39_000_000L);
+            Assertions.assertEquals(StateId.valueOf(1), manager.getCurrentState().getStateId());
+            manager.tick(1_000_000L);
+            Assertions.assertEquals(StateId.valueOf(3), manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void acceptedGuardBeforeLongerDelay() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameState(new DummyState(3));
+            manager.registerGameStateFlow(StateFlow.after(Duration.ofMillis(10)).goFrom(StateId.valueOf(1)).when(() -> true).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.after(Duration.ofMillis(50)).goFrom(StateId.valueOf(1)).to(StateId.valueOf(3)));
+            manager.tick(0);
+            manager.tick(10_000_000L);
+            Assertions.assertEquals(StateId.valueOf(2), manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void rejectedGuardInPool() {
+            var pool = StateMachineDefinition.<DummyState>builder()
+                    .registerGameState(new DummyState(1))
+                    .registerGameState(new DummyState(2))
+                    .registerGameState(new DummyState(3))
+                    .registerGameStateFlow(StateFlow.after(Duration.ofMillis(10)).goFrom(StateId.valueOf(1)).when(() -> false).to(StateId.valueOf(2)))
+                    .registerGameStateFlow(StateFlow.after(Duration.ofMillis(50)).goFrom(StateId.valueOf(1)).to(StateId.valueOf(3)))
+                    .build()
+                    .newPool(3, StateId.valueOf(1));
+            pool.tick(10_000_000L);
+            Assertions.assertEquals(StateId.valueOf(1), pool.getCurrentStateId(0));
+            pool.tick(40_000_000L);
+            Assertions.assertEquals(StateId.valueOf(3), pool.getCurrentStateId(2));
+        }
+
+        @Test
+        public void negativeDelay() {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> StateFlow.after(Duration.ofMillis(-1)));
+        }
+
+    }
+
+    @Nested
+    public class Group {
+
+        private final StateGroup overlays = StateGroup.of("overlays", StateIds.CONFIGURATION_SCREEN, StateIds.EULA_SCREEN);
+
+        private StateManager<DummyState> manager() {
+            var manager = StateManager.withInitialState(new DummyState(StateIds.CONFIGURATION_SCREEN.id));
+            manager.registerGameState(new DummyState(StateIds.EULA_SCREEN.id));
+            manager.registerGameState(new DummyState(StateIds.MAIN_SCREEN.id));
+            manager.registerGameState(new DummyState(StateIds.TITLE_SCREEN.id));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(this.overlays).to(StateIds.MAIN_SCREEN));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_EULA).goFrom(StateIds.CONFIGURATION_SCREEN).to(StateIds.EULA_SCREEN));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_CONFIGURATION).goFrom(StateIds.MAIN_SCREEN).to(StateIds.CONFIGURATION_SCREEN));
+            return manager;
+        }
+
+        @Test
+        public void happyFlow() {
+            var manager = this.manager();
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(StateIds.MAIN_SCREEN.id, manager.getCurrentState().getStateId());
+            manager.processEvent(StateFlowEvents.OPEN_CONFIGURATION);
+            manager.processEvent(StateFlowEvents.OPEN_EULA);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(StateIds.MAIN_SCREEN.id, manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void notMember() {
+            var manager = this.manager();
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(StateIds.MAIN_SCREEN.id, manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void stateWinsOverGroup() {
+            var manager = this.manager();
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateIds.EULA_SCREEN).to(StateIds.TITLE_SCREEN));
+            manager.processEvent(StateFlowEvents.OPEN_EULA);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(StateIds.TITLE_SCREEN.id, manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void groupWinsOverAny() {
+            var manager = this.manager();
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateIds.ANY).to(StateIds.TITLE_SCREEN));
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(StateIds.MAIN_SCREEN.id, manager.getCurrentState().getStateId());
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(StateIds.TITLE_SCREEN.id, manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void groupWinsOverParent() {
+            var manager = this.manager();
+            manager.registerParentState(StateIds.EULA_SCREEN.id, StateIds.TITLE_SCREEN.id);
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateIds.TITLE_SCREEN).to(StateIds.TITLE_SCREEN));
+            manager.processEvent(StateFlowEvents.OPEN_EULA);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(StateIds.MAIN_SCREEN.id, manager.getCurrentState().getStateId());
+        }
+
+        @Test
+        public void groupExecution() {
+            var executed = new ArrayList<StateId>();
+            var manager = this.manager();
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(this.overlays).execute(() -> executed.add(manager.getCurrentState().getStateId())));
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(List.of(StateIds.CONFIGURATION_SCREEN.id), executed);
+        }
+
+        @Test
+        public void danglingTarget() {
+            var manager = this.manager();
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_APP).goFrom(this.overlays).to(StateIds.APP_CLOSED));
+            Assertions.assertEquals(1, manager.validate().getDanglingFlows().size());
+        }
+
+        @Test
+        public void invalidGroup() {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> StateGroup.of("empty", new StateId[0]));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> StateGroup.of("any", StateIds.ANY, StateIds.TITLE_SCREEN));
+        }
+
+    }
+
+    @Nested
+    public class FanOut {
+
+        private final List<String> executed = new ArrayList<>();
+
+        private StateManager<DummyState> manager() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateIds.ANY)
+                    .execute(() -> this.executed.add("any " + manager.getCurrentState().getStateId().value())));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(2))
+                    .execute(() -> this.executed.add("first " + manager.getCurrentState().getStateId().value())));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(2))
+                    .execute(() -> this.executed.add("second " + manager.getCurrentState().getStateId().value())));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1))
+                    .executeBefore(() -> this.executed.add("before " + manager.getCurrentState().getStateId().value())));
+            return manager;
+        }
+
+        @Test
+        public void happyFlow() {
+            var manager = this.manager();
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(List.of("before 1", "first 2", "second 2", "any 2"), this.executed);
+        }
+
+        @Test
+        public void batch() {
+            var manager = this.manager();
+            manager.processEvents(new int[]{StateFlowEvents.LOADING_COMPLETED.event.value(), StateFlowEvents.LOADING_COMPLETED.event.value()}, 0, 2);
+            Assertions.assertEquals(List.of("before 1", "first 2", "second 2", "any 2", "first 2", "second 2", "any 2"), this.executed);
+        }
+
+        @Test
+        public void definition() {
+            var executed = new ArrayList<String>();
+            var instance = StateMachineDefinition.<DummyState>builder()
+                    .registerGameState(new DummyState(1))
+                    .registerGameState(new DummyState(2))
+                    .registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)))
+                    .registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateIds.ANY).execute(() -> executed.add("any")))
+                    .registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).executeBefore(() -> executed.add("before")))
+                    .registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(2)).execute(() -> executed.add("after")))
+                    .build()
+                    .newInstance(StateId.valueOf(1));
+            instance.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(List.of("before", "after", "any"), executed);
+        }
+
+    }
+
+    @Nested
+    public class Listener {
+
+        private final List<String> notified = new ArrayList<>();
+
+        private StateManager<DummyState> manager() {
+            var manager = StateManager.withInitialState(new DummyState(1));
+            manager.registerGameState(new DummyState(2));
+            manager.registerGameState(new DummyState(3));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.LOADING_COMPLETED).goFrom(StateId.valueOf(1)).to(StateId.valueOf(2)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.OPEN_EULA).goFrom(StateId.valueOf(2)).to(StateId.valueOf(3)));
+            manager.registerGameStateFlow(StateFlow.on(StateFlowEvents.CLOSE_CONFIGURATION).goFrom(StateIds.ANY).to(StateId.valueOf(1)));
+            return manager;
+        }
+
+        @Test
+        public void happyFlow() {
+            var manager = this.manager();
+            manager.addTransitionListener((from, event, to) -> this.notified.add(from + ">" + event + ">" + to));
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertEquals(List.of("1>" + StateFlowEvents.LOADING_COMPLETED.event.value() + ">2"), this.notified);
+        }
+
+        @Test
+        public void stateFilter() {
+            var manager = this.manager();
+            manager.addTransitionListener((from, event, to) -> this.notified.add(from + ">" + to), List.of(StateId.valueOf(3)), List.of());
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.processEvent(StateFlowEvents.OPEN_EULA);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(List.of("2>3", "3>1"), this.notified);
+        }
+
+        @Test
+        public void eventFilter() {
+            var manager = this.manager();
+            manager.addTransitionListener((from, event, to) -> this.notified.add(from + ">" + to), List.of(), List.of(StateFlowEvents.CLOSE_CONFIGURATION.event));
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            manager.processEvent(StateFlowEvents.CLOSE_CONFIGURATION);
+            Assertions.assertEquals(List.of("2>1"), this.notified);
+        }
+
+        @Test
+        public void batch() {
+            var manager = this.manager();
+            manager.addTransitionListener((from, event, to) -> this.notified.add(from + ">" + to));
+            manager.processEvents(new int[]{StateFlowEvents.LOADING_COMPLETED.event.value(), StateFlowEvents.OPEN_EULA.event.value()}, 0, 2);
+            Assertions.assertEquals(List.of("1>3"), this.notified);
+        }
+
+        @Test
+        public void removed() {
+            var manager = this.manager();
+            TransitionListener listener = (from, event, to) -> this.notified.add(from + ">" + to);
+            manager.addTransitionListener(listener);
+            manager.removeTransitionListener(listener);
+            manager.processEvent(StateFlowEvents.LOADING_COMPLETED);
+            Assertions.assertTrue(this.notified.isEmpty());
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+
+package be.yildizgames.engine.client.statemachine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TimerWheelTest {
+
+    @Nested
+    public class Advance {
+
+        @Test
+        public void happyFlow() {
+            var wheel = new TimerWheel(8, 10);
+            var expired = new ArrayList<Integer>();
+            wheel.arm(1, 30);
+            wheel.arm(2, 50);
+            wheel.advance(29, expired::add);
+            Assertions.assertEquals(List.of(), expired);
+            wheel.advance(1, expired::add);
+            Assertions.assertEquals(List.of(1), expired);
+            wheel.advance(20, expired::add);
+            Assertions.assertEquals(List.of(1, 2), expired);
+            Assertions.assertEquals(0, wheel.size());
+        }
+
+        @Test
+        public void severalTurns() {
+            var wheel = new TimerWheel(8, 10);
+            var expired = new ArrayList<Integer>();
+            wheel.arm(1, 250);
+            wheel.advance(240, expired::add);
+            Assertions.assertEquals(List.of(), expired);
+            wheel.advance(10, expired::add);
+            Assertions.assertEquals(List.of(1), expired);
+        }
+
+        @Test
+        public void longPause() {
+            var wheel = new TimerWheel(8, 10);
+            var expired = new ArrayList<Integer>();
+            wheel.arm(1, 30);
+            wheel.arm(2, 1_000);
+            wheel.arm(3, 100_000);
+            wheel.advance(5_000, expired::add);
+            Assertions.assertEquals(List.of(1, 2), expired.stream().sorted().toList());
+            Assertions.assertEquals(1, wheel.size());
+        }
+
+        @Test
+        public void rearmFromExpiration() {
+            var wheel = new TimerWheel(8, 10);
+            var expired = new ArrayList<Integer>();
+            wheel.arm(1, 10);
+            wheel.advance(30, owner -> {
+                expired.add(owner);
+                wheel.arm(owner, 10);
+            });
+            Assertions.assertEquals(List.of(1, 1, 1), expired);
+        }
+
+    }
+
+    @Nested
+    public class Cancel {
+
+        @Test
+        public void happyFlow() {
+            var wheel = new TimerWheel(8, 10);
+            var expired = new ArrayList<Integer>();
+            int first = wheel.arm(1, 30);
+            wheel.arm(2, 30);
+            int third = wheel.arm(3, 30);
+            wheel.cancel(first);
+            wheel.cancel(third);
+            wheel.advance(30, expired::add);
+            Assertions.assertEquals(List.of(2), expired);
+        }
+
+        @Test
+        public void manyTimers() {
+            var wheel = new TimerWheel(512, 1);
+            int[] timers = new int[200_000];
+            for (int i = 0; i < timers.length; i++) {
+                timers[i] = wheel.arm(i, i % 1_000);
+            }
+            for (int i = 0; i < timers.length; i += 2) {
+                wheel.cancel(timers[i]);
+            }
+            int[] count = new int[1];
+            wheel.advance(1_000, owner -> {
+                Assertions.assertEquals(1, owner % 2);
+                count[0]++;
+            });
+            Assertions.assertEquals(100_000, count[0]);
+        }
+
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ * Copyright (c) 2019 Grégory Van den Borre
+ *
+ * More infos available: https://engine.yildiz-games.be
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons
+ * to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE  SOFTWARE.
+ */
+package be.yildizgames.engine.client.statemachine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+public class TransitionTraceTest {
+
+    @Nested
+    public class Record {
+
+        @Test
+        public void happyFlow() {
+            var trace = new TransitionTrace(4);
+            trace.record(1, 3, 2);
+            trace.record(2, 5, 2);
+            var entries = trace.snapshot();
+            Assertions.assertEquals(2, entries.size());
+            Assertions.assertEquals(1, entries.get(0).from());
+            Assertions.assertEquals(3, entries.get(0).event());
+            Assertions.assertEquals(2, entries.get(0).to());
+            Assertions.assertTrue(entries.get(0).timestamp() <= entries.get(1).timestamp());
+        }
+
+        @Test
+        public void overwritten() {
+            var trace = new TransitionTrace(3);
+            for (int i = 0; i < 10; i++) {
+                trace.record(i, i, i);
+            }
+            var entries = trace.snapshot();
+            Assertions.assertEquals(List.of(7, 8, 9), entries.stream().map(TransitionTrace.Entry::event).toList());
+        }
+
+        @Test
+        public void negativeValues() {
+            var trace = new TransitionTrace(2);
+            trace.record(-2, -7, -1);
+            var entry = trace.snapshot().get(0);
+            Assertions.assertEquals(-2, entry.from());
+            Assertions.assertEquals(-7, entry.event());
+            Assertions.assertEquals(-1, entry.to());
+        }
+
+        @Test
+        public void capacityRounded() {
+            Assertions.assertEquals(7, new TransitionTrace(5).getCapacity());
+            Assertions.assertEquals(7, new TransitionTrace(7).getCapacity());
+            Assertions.assertEquals(15, new TransitionTrace(8).getCapacity());
+            Assertions.assertEquals(1, new TransitionTrace(1).getCapacity());
+        }
+
+        @Test
+        public void invalidCapacity() {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> new TransitionTrace(0));
+        }
+    }
+
+    @Nested
+    public class Dump {
+
+        @Test
+        public void happyFlow() throws IOException {
+            var trace = new TransitionTrace(8);
+            trace.record(1, 3, 2);
+            trace.record(2, 6, 4);
+            var output = new ByteArrayOutputStream();
+            trace.dump(output);
+            var entries = TransitionTraceReader.read(new ByteArrayInputStream(output.toByteArray()));
+            Assertions.assertEquals(trace.snapshot(), entries);
+        }
+
+        @Test
+        public void invalidMagic() {
+            var input = new ByteArrayInputStream(new byte[12]);
+            Assertions.assertThrows(IOException.class, () -> TransitionTraceReader.read(input));
+        }
+    }
+}